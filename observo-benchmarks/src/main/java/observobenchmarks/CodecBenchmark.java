@@ -0,0 +1,88 @@
+package observobenchmarks;
+
+import observo.codec.BinaryCodec;
+import observo.codec.Codec;
+import observo.codec.JavaSerializationCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode cost of the available codecs across payload sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"java", "binary"})
+    private String codecName;
+
+    @Param({"16", "1024", "65536"})
+    private int payloadSize;
+
+    private Codec<Sample> codec;
+    private Sample sample;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        codec = "java".equals(codecName) ? new JavaSerializationCodec<>(Sample.class) : Sample.BINARY_CODEC;
+
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        sample = new Sample("sample", System.currentTimeMillis(), payload);
+        encoded = codec.encode(sample);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(sample);
+    }
+
+    @Benchmark
+    public Sample decode() throws IOException {
+        return codec.decode(encoded);
+    }
+
+    public static class Sample implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final BinaryCodec<Sample> BINARY_CODEC = new BinaryCodec<>(
+                (sample, out) -> {
+                    out.writeUTF(sample.name);
+                    out.writeLong(sample.timestamp);
+                    BinaryCodec.writeBytes(sample.payload, out);
+                },
+                in -> new Sample(in.readUTF(), in.readLong(), BinaryCodec.readBytes(in)));
+
+        private final String name;
+        private final long timestamp;
+        private final byte[] payload;
+
+        public Sample(String name, long timestamp, byte[] payload) {
+            this.name = name;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+    }
+
+}
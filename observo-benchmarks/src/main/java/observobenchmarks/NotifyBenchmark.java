@@ -0,0 +1,104 @@
+package observobenchmarks;
+
+import observo.Observable;
+import observo.ObservableFactory;
+import observo.conf.ObservoConf;
+import observo.conf.WatchMode;
+import observo.conf.ZookeeperConf;
+import org.apache.curator.test.TestingServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * End to end notify / ack round-trip against an in-process zookeeper.
+ * Throughput and sample time (p50/p99/p999) are reported for every combination of
+ * observers, payload size and watch mode; publisher concurrency is covered by the
+ * single and concurrent publisher benchmarks (or overridden with the JMH -t option).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class NotifyBenchmark {
+
+    private static final long NOTIFICATION_TIMEOUT_MS = 10000;
+    private static final long LOCK_TIMEOUT_MS = 10000;
+    private static final int CONNECTION_TIMEOUT_MS = 5000;
+    private static final int RETRY_TIMES = 3;
+    private static final int RETRY_MS_SLEEP = 100;
+
+    @Param({"1", "10", "50"})
+    private int observers;
+
+    @Param({"128", "16384", "262144"})
+    private int payloadSize;
+
+    @Param({"ONE_SHOT", "PERSISTENT"})
+    private WatchMode watchMode;
+
+    private TestingServer zkServer;
+    private Observable<byte[]> observable;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        zkServer = new TestingServer();
+        ZookeeperConf zookeeperConf = new ZookeeperConf(zkServer.getConnectString(), CONNECTION_TIMEOUT_MS, RETRY_TIMES, RETRY_MS_SLEEP);
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .watchMode(watchMode)
+                .build();
+        ObservableFactory factory = new ObservableFactory(zookeeperConf, observoConf, "benchmark");
+        observable = factory.createObservable("notify", byte[].class);
+
+        for (int i = 0; i < observers; i++) {
+            observable.registerObserver(data -> {});
+        }
+
+        payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        observable.unregisterAllObservers();
+        zkServer.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void notifySinglePublisher() throws InterruptedException, ExecutionException, TimeoutException {
+        observable.notifyObservers(payload);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void notifyConcurrentPublishers() throws InterruptedException, ExecutionException, TimeoutException {
+        observable.notifyObservers(payload);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void notifyAsyncAndJoin() throws InterruptedException, ExecutionException, TimeoutException {
+        observable.notifyObserversAsync(payload).join(NOTIFICATION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+}
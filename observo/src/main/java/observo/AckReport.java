@@ -0,0 +1,63 @@
+package observo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which observers acknowledged a notification, and how long each took from the write of the notification,
+ * as known when the notification completed or timed out.
+ */
+public class AckReport {
+
+    private final long version;
+    private final Map<String, Long> ackTimesMs;
+    private final Set<String> stragglers;
+    private final Set<String> departed;
+
+    AckReport(long version, Map<String, Long> ackTimesMs, Set<String> stragglers, Set<String> departed) {
+        this.version = version;
+        this.ackTimesMs = Collections.unmodifiableMap(ackTimesMs);
+        this.stragglers = Collections.unmodifiableSet(stragglers);
+        this.departed = Collections.unmodifiableSet(departed);
+    }
+
+    /**
+     * @return the version of the observable node, or the log sequence number, identifying the notification;
+     * {@link Acknowledgement#NONE} if it was not written
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the milliseconds each acknowledging observer took, by observer node name
+     */
+    public Map<String, Long> getAckTimesMs() {
+        return ackTimesMs;
+    }
+
+    /**
+     * @return the observers that had not acknowledged yet
+     */
+    public Set<String> getStragglers() {
+        return stragglers;
+    }
+
+    /**
+     * @return the observers that went away before acknowledging, and were no longer waited for
+     */
+    public Set<String> getDeparted() {
+        return departed;
+    }
+
+    @Override
+    public String toString() {
+        return "AckReport{" +
+                "version=" + version +
+                ", ackTimesMs=" + ackTimesMs +
+                ", stragglers=" + stragglers +
+                ", departed=" + departed +
+                '}';
+    }
+}
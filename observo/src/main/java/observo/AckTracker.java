@@ -0,0 +1,159 @@
+package observo;
+
+import observo.conf.AckPolicy;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the acknowledgements of a single notification.
+ * The notification is complete once the observers required by the policy have acknowledged a version
+ * at least as recent as the one written by the notification; acknowledgements may arrive
+ * before that version is known.
+ * The time of the latest acknowledgement of each observer is kept for the report.
+ */
+class AckTracker {
+
+    private static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final Set<String> observers;
+    private final AckPolicy ackPolicy;
+    private final Set<String> expected = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> acks = new ConcurrentHashMap<>();
+    private final Map<String, Long> ackNanos = new ConcurrentHashMap<>();
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+    private volatile long version = UNKNOWN;
+    private volatile long startNanos = System.nanoTime();
+
+    AckTracker(Collection<String> observers) {
+        this(observers, AckPolicy.all());
+    }
+
+    AckTracker(Collection<String> observers, AckPolicy ackPolicy) {
+        this.observers = new HashSet<>(observers);
+        this.ackPolicy = ackPolicy;
+        expected.addAll(observers);
+    }
+
+    /**
+     * Marks the write of the notification, from which the acknowledgement times are measured.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void ack(String observer, long ackedVersion) {
+        record(observer, ackedVersion);
+        checkCompletion();
+    }
+
+    /**
+     * Accounts for the latest acknowledgements of all the observers; observers without an acknowledgement are gone,
+     * unless still registered, as an observer creates its acknowledgement only once registered.
+     * @param registered the observers registered, as listed after the acknowledgements
+     */
+    void ackAll(Map<String, Long> ackedVersions, Collection<String> registered) {
+        ackedVersions.forEach(this::record);
+        expected.removeIf(observer -> !ackedVersions.containsKey(observer) && !registered.contains(observer));
+        checkCompletion();
+    }
+
+    /**
+     * @return true if any observer still expected to acknowledge is missing from the given ones
+     */
+    boolean expectsOthersThan(Collection<String> observers) {
+        return !observers.containsAll(expected);
+    }
+
+    /**
+     * The observer is gone and its acknowledgement is no longer expected.
+     */
+    void remove(String observer) {
+        expected.remove(observer);
+        checkCompletion();
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+        checkCompletion();
+    }
+
+    boolean isAcked(String observer) {
+        return acks.getOrDefault(observer, Acknowledgement.NONE) >= version;
+    }
+
+    /**
+     * @return the acknowledgements received so far
+     */
+    AckReport report() {
+        Map<String, Long> ackTimesMs = new HashMap<>();
+        ackLatenciesNanos().forEach((observer, nanos) -> ackTimesMs.put(observer, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        Set<String> stragglers = new HashSet<>(expected);
+        stragglers.removeAll(ackTimesMs.keySet());
+        Set<String> departed = new HashSet<>(observers);
+        departed.removeAll(expected);
+        return new AckReport(version == UNKNOWN ? Acknowledgement.NONE : version, ackTimesMs, stragglers, departed);
+    }
+
+    /**
+     * @return the time each expected observer took to acknowledge, for those that have
+     */
+    Map<String, Long> ackLatenciesNanos() {
+        long start = startNanos;
+        Map<String, Long> latencies = new HashMap<>();
+        for (String observer : expected) {
+            if (version != UNKNOWN && isAcked(observer)) {
+                // acknowledgements read before the write was marked are accounted as immediate
+                latencies.put(observer, Math.max(0, ackNanos.getOrDefault(observer, start) - start));
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * @return true once the required observers have acknowledged, or the tracking has been cancelled
+     */
+    boolean isComplete() {
+        return completion.isDone();
+    }
+
+    /**
+     * Stops the tracking, e.g. on timeout; the completion task is not run.
+     */
+    void cancel() {
+        completion.complete(false);
+    }
+
+    /**
+     * @param completeTask run, on the thread delivering the last required acknowledgement, once the required observers have acknowledged
+     */
+    void whenComplete(Runnable completeTask) {
+        completion.thenAccept(acknowledged -> {
+            if (acknowledged) {
+                completeTask.run();
+            }
+        });
+    }
+
+    private void record(String observer, long ackedVersion) {
+        acks.compute(observer, (o, previous) -> {
+            if (previous != null && previous >= ackedVersion) {
+                return previous;
+            }
+            ackNanos.put(o, System.nanoTime());
+            return ackedVersion;
+        });
+    }
+
+    private void checkCompletion() {
+        if (version != UNKNOWN && expected.stream().filter(this::isAcked).count() >= ackPolicy.requiredAcks(expected.size())) {
+            completion.complete(true);
+        }
+    }
+}
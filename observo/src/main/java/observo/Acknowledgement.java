@@ -0,0 +1,39 @@
+package observo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Latest version of the observable node, or latest event log sequence number, processed by an observer.
+ * It is either the content of the observer node, or part of the name of the observer ack node
+ * when acknowledgements are aggregated.
+ */
+class Acknowledgement {
+
+    static final long NONE = -1;
+
+    private static final int LENGTH = Long.BYTES;
+    private static final char ACK_NODE_SEPARATOR = '@';
+
+    private Acknowledgement() {
+    }
+
+    static byte[] toBytes(long version) {
+        return ByteBuffer.allocate(LENGTH).putLong(version).array();
+    }
+
+    static long fromBytes(byte[] bytes) {
+        return bytes == null || bytes.length != LENGTH ? NONE : ByteBuffer.wrap(bytes).getLong();
+    }
+
+    static String toAckNode(String observer, long version) {
+        return observer + ACK_NODE_SEPARATOR + version;
+    }
+
+    static String observerOf(String ackNode) {
+        return ackNode.substring(0, ackNode.lastIndexOf(ACK_NODE_SEPARATOR));
+    }
+
+    static long versionOf(String ackNode) {
+        return Long.parseLong(ackNode.substring(ackNode.lastIndexOf(ACK_NODE_SEPARATOR) + 1));
+    }
+}
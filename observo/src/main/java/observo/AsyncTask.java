@@ -1,16 +1,59 @@
 package observo;
 
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
-public interface AsyncTask {
+/**
+ * The outcome of an asynchronous notification; it can be composed as any other {@link CompletionStage}.
+ */
+public interface AsyncTask extends CompletionStage<Void> {
 
     void join(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException;
 
+    /**
+     * Adds a task to run on successful completion; tasks run in the order they were added.
+     */
     AsyncTask whenComplete(Runnable completeTask);
 
+    /**
+     * Adds a task to run on exceptional completion; tasks run in the order they were added.
+     */
     AsyncTask whenError(Consumer<Throwable> errorTask);
 
+    /**
+     * @return which observers acknowledged the notification and how long each took, once it has completed or timed out;
+     * null before then, or if the task does not track acknowledgements
+     */
+    AckReport getAckReport();
+
+    /**
+     * @return the identity of the notification, as written into its envelope; null if the task is not a notification
+     */
+    UUID getNotificationId();
+
+    /**
+     * @return a task completing once all the tasks have completed, exceptionally if any of them did
+     */
+    static AsyncTask allOf(AsyncTask... tasks) {
+        AsyncTaskImpl all = new AsyncTaskImpl();
+        CompletableFuture<?>[] futures = Arrays.stream(tasks)
+                .map(CompletionStage::toCompletableFuture)
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(futures).whenComplete((result, ex) -> {
+            if (ex == null) {
+                all.completeSuccessfully();
+            } else {
+                all.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+        });
+        return all;
+    }
+
 }
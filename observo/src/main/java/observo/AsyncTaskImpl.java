@@ -3,92 +3,311 @@ package observo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * The task is only completed through {@link #completeSuccessfully()} and {@link #completeExceptionally(Throwable)}:
+ * the stages composed on it are dependent futures, and {@link #toCompletableFuture()} returns a copy,
+ * so that completing them does not complete the task.
+ */
 public class AsyncTaskImpl implements AsyncTask {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTaskImpl.class);
 
-    private volatile Runnable completeTask;
-    private volatile Consumer<Throwable> errorTask;
-    private volatile boolean hasCompletedSuccessfully = false;
-    private volatile boolean hasCompletedExceptionally = false;
-    private volatile Throwable exception = null;
-    private final AtomicBoolean oneOffToggle = new AtomicBoolean(false);
-    private final CountDownLatch latch = new CountDownLatch(1);
+    // the complete and error tasks are chained on the outcome (null on success), so that they run in order
+    // and join returns only after they have run
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final Object tasksLock = new Object();
+    private CompletableFuture<Throwable> tasks = future.handle((result, ex) -> ex);
+    private volatile AckReport ackReport;
+    private volatile UUID notificationId;
 
     @Override
     public void join(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        if (!latch.await(timeout, unit)) {
+        Throwable exception;
+        try {
+            exception = lastTask().get(timeout, unit);
+        } catch (TimeoutException e) {
             throw new TimeoutException("Timeout reached " + timeout + " " + unit);
         }
-        if (hasCompletedExceptionally) {
+        if (exception != null) {
             throw new ExecutionException(exception);
         }
     }
 
     @Override
     public AsyncTaskImpl whenComplete(Runnable completeTask) {
-        this.completeTask = completeTask;
-        if (hasCompletedSuccessfully) {
-            executeCompleteTask();
-        }
+        chain(exception -> {
+            if (exception == null) {
+                try {
+                    completeTask.run();
+                } catch(Exception e) {
+                    LOGGER.error("Exception while running complete task: {}", completeTask, e);
+                }
+            }
+        });
         return this;
     }
 
     public void completeSuccessfully() {
-        hasCompletedSuccessfully = true;
-        executeCompleteTask();
-    }
-
-    @Override
-    public AsyncTaskImpl whenError(Consumer<Throwable> errorTask) {
-        this.errorTask = errorTask;
-        if (hasCompletedExceptionally) {
-            executeErrorTask();
-        }
-        return this;
+        future.complete(null);
     }
 
     public void completeExceptionally(Throwable ex) {
-        this.exception = ex;
-        hasCompletedExceptionally = true;
-        executeErrorTask();
-    }
-
-    private void executeCompleteTask() {
-        if (shouldExecuteTask()) {
-            if (completeTask != null) {
-                try {
-                    completeTask.run();
-                } catch(Exception e) {
-                    LOGGER.error("Exception while running complete task: {}", completeTask, e);
-                }
-            }
-            latch.countDown();
-        }
+        future.completeExceptionally(ex);
     }
 
-    private void executeErrorTask() {
-        if (shouldExecuteTask()) {
-            if (errorTask != null) {
+    @Override
+    public AsyncTaskImpl whenError(Consumer<Throwable> errorTask) {
+        chain(exception -> {
+            if (exception != null) {
                 try {
                     errorTask.accept(exception);
                 } catch (Exception e) {
                     LOGGER.error("Exception while running error task {}", errorTask, e);
                 }
             }
-            latch.countDown();
+        });
+        return this;
+    }
+
+    @Override
+    public AckReport getAckReport() {
+        return ackReport;
+    }
+
+    /**
+     * Set before completing the task, so that the tasks run on completion can read it.
+     */
+    void setAckReport(AckReport ackReport) {
+        this.ackReport = ackReport;
+    }
+
+    @Override
+    public UUID getNotificationId() {
+        return notificationId;
+    }
+
+    void setNotificationId(UUID notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApply(Function<? super Void, ? extends U> fn) {
+        return future.thenApply(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApplyAsync(Function<? super Void, ? extends U> fn) {
+        return future.thenApplyAsync(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenApplyAsync(Function<? super Void, ? extends U> fn, Executor executor) {
+        return future.thenApplyAsync(fn, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAccept(Consumer<? super Void> action) {
+        return future.thenAccept(action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAcceptAsync(Consumer<? super Void> action) {
+        return future.thenAcceptAsync(action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenAcceptAsync(Consumer<? super Void> action, Executor executor) {
+        return future.thenAcceptAsync(action, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRun(Runnable action) {
+        return future.thenRun(action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRunAsync(Runnable action) {
+        return future.thenRunAsync(action);
+    }
+
+    @Override
+    public CompletionStage<Void> thenRunAsync(Runnable action, Executor executor) {
+        return future.thenRunAsync(action, executor);
+    }
+
+    @Override
+    public <U, V> CompletionStage<V> thenCombine(CompletionStage<? extends U> other, BiFunction<? super Void, ? super U, ? extends V> fn) {
+        return future.thenCombine(other, fn);
+    }
+
+    @Override
+    public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super Void, ? super U, ? extends V> fn) {
+        return future.thenCombineAsync(other, fn);
+    }
+
+    @Override
+    public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other, BiFunction<? super Void, ? super U, ? extends V> fn, Executor executor) {
+        return future.thenCombineAsync(other, fn, executor);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBoth(CompletionStage<? extends U> other, BiConsumer<? super Void, ? super U> action) {
+        return future.thenAcceptBoth(other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super Void, ? super U> action) {
+        return future.thenAcceptBothAsync(other, action);
+    }
+
+    @Override
+    public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other, BiConsumer<? super Void, ? super U> action, Executor executor) {
+        return future.thenAcceptBothAsync(other, action, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+        return future.runAfterBoth(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+        return future.runAfterBothAsync(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return future.runAfterBothAsync(other, action, executor);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEither(CompletionStage<? extends Void> other, Function<? super Void, U> fn) {
+        return future.applyToEither(other, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends Void> other, Function<? super Void, U> fn) {
+        return future.applyToEitherAsync(other, fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends Void> other, Function<? super Void, U> fn, Executor executor) {
+        return future.applyToEitherAsync(other, fn, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEither(CompletionStage<? extends Void> other, Consumer<? super Void> action) {
+        return future.acceptEither(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends Void> other, Consumer<? super Void> action) {
+        return future.acceptEitherAsync(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends Void> other, Consumer<? super Void> action, Executor executor) {
+        return future.acceptEitherAsync(other, action, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+        return future.runAfterEither(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+        return future.runAfterEitherAsync(other, action);
+    }
+
+    @Override
+    public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+        return future.runAfterEitherAsync(other, action, executor);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenCompose(Function<? super Void, ? extends CompletionStage<U>> fn) {
+        return future.thenCompose(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenComposeAsync(Function<? super Void, ? extends CompletionStage<U>> fn) {
+        return future.thenComposeAsync(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> thenComposeAsync(Function<? super Void, ? extends CompletionStage<U>> fn, Executor executor) {
+        return future.thenComposeAsync(fn, executor);
+    }
+
+    @Override
+    public CompletionStage<Void> exceptionally(Function<Throwable, ? extends Void> fn) {
+        return future.exceptionally(fn);
+    }
+
+    @Override
+    public CompletionStage<Void> whenComplete(BiConsumer<? super Void, ? super Throwable> action) {
+        return future.whenComplete(action);
+    }
+
+    @Override
+    public CompletionStage<Void> whenCompleteAsync(BiConsumer<? super Void, ? super Throwable> action) {
+        return future.whenCompleteAsync(action);
+    }
+
+    @Override
+    public CompletionStage<Void> whenCompleteAsync(BiConsumer<? super Void, ? super Throwable> action, Executor executor) {
+        return future.whenCompleteAsync(action, executor);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handle(BiFunction<? super Void, Throwable, ? extends U> fn) {
+        return future.handle(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handleAsync(BiFunction<? super Void, Throwable, ? extends U> fn) {
+        return future.handleAsync(fn);
+    }
+
+    @Override
+    public <U> CompletionStage<U> handleAsync(BiFunction<? super Void, Throwable, ? extends U> fn, Executor executor) {
+        return future.handleAsync(fn, executor);
+    }
+
+    /**
+     * @return a copy of the task, completing along with it
+     */
+    @Override
+    public CompletableFuture<Void> toCompletableFuture() {
+        return future.thenApply(result -> result);
+    }
+
+    private void chain(Consumer<Throwable> task) {
+        synchronized (tasksLock) {
+            tasks = tasks.thenApply(exception -> {
+                task.accept(exception);
+                return exception;
+            });
         }
     }
 
-    private boolean shouldExecuteTask() {
-        return oneOffToggle.compareAndSet(false, true);
+    private CompletableFuture<Throwable> lastTask() {
+        synchronized (tasksLock) {
+            return tasks;
+        }
     }
 
 }
@@ -0,0 +1,20 @@
+package observo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Observer receiving the notifications published through a batch all at once;
+ * single notifications are received as a batch of one.
+ */
+@FunctionalInterface
+public interface BatchObserver<T> extends Observer<T> {
+
+    void updateBatch(List<T> batch);
+
+    @Override
+    default void update(T data) {
+        updateBatch(Collections.singletonList(data));
+    }
+
+}
@@ -0,0 +1,218 @@
+package observo;
+
+import observo.conf.OverflowPolicy;
+import observo.jfr.ObservoEvents;
+import observo.payload.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the notifications to a single observer, in order, on the dispatch executor rather than on the
+ * zookeeper event thread, so that a slow observer only delays itself.
+ * Notifications wait in a bounded queue, overflowing according to the {@link OverflowPolicy}; the acknowledgement
+ * carried by a discarded notification is taken over by the one replacing it, as acknowledgements are cumulative.
+ * Submitting never blocks: with {@link OverflowPolicy#BLOCK}, the notifications arriving while the queue is full
+ * are held back, in order, and the future returned on submission completes once they enter the queue.
+ */
+class DispatchLane<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchLane.class);
+
+    @FunctionalInterface
+    interface Acknowledger {
+        void acknowledge(long version) throws Exception;
+    }
+
+    private final Observer<T> observer;
+    private final Acknowledger acknowledger;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final PipelineMetrics metrics;
+    private final Deque<Delivery<T>> queue = new ArrayDeque<>();
+    private final Deque<Delivery<T>> heldBack = new ArrayDeque<>();
+    private boolean draining = false;
+    private boolean closed = false;
+    private long dropped = 0;
+
+    DispatchLane(Observer<T> observer, Acknowledger acknowledger, Executor executor, int capacity, OverflowPolicy overflowPolicy) {
+        this(observer, acknowledger, executor, capacity, overflowPolicy, PipelineMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the time taken by each update of the observer, the propagation of the notifications
+     * and the notifications discarded on overflow
+     */
+    DispatchLane(Observer<T> observer, Acknowledger acknowledger, Executor executor, int capacity, OverflowPolicy overflowPolicy, PipelineMetrics metrics) {
+        this.observer = observer;
+        this.acknowledger = acknowledger;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param notification the notified data, or null to only acknowledge
+     * @param version the version to acknowledge once the notification has been delivered, or {@link Acknowledgement#NONE}
+     * @return completed once the notification has entered the queue, or has been discarded
+     */
+    CompletableFuture<Void> submit(Notification<T> notification, long version) {
+        Delivery<T> delivery = new Delivery<>(notification, version);
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (overflowPolicy == OverflowPolicy.BLOCK && (queue.size() >= capacity || !heldBack.isEmpty())) {
+                delivery.queued = new CompletableFuture<>();
+                heldBack.addLast(delivery);
+                return delivery.queued;
+            }
+            makeRoom(delivery);
+            queue.addLast(delivery);
+            if (draining) {
+                return CompletableFuture.completedFuture(null);
+            }
+            draining = true;
+        }
+        executor.execute(this::drain);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void makeRoom(Delivery<T> delivery) {
+        if (queue.size() < capacity) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                delivery.takeOver(queue.pollFirst(), false);
+                dropped(1);
+                break;
+            case COALESCE_LATEST:
+                int discarded = queue.size();
+                while (!queue.isEmpty()) {
+                    delivery.takeOver(queue.pollLast(), true);
+                }
+                dropped(discarded);
+                break;
+            default:
+                throw new IllegalStateException("unexpected overflow policy " + overflowPolicy);
+        }
+    }
+
+    private void dropped(int count) {
+        dropped += count;
+        metrics.dropped.increment(count);
+    }
+
+    private void drain() {
+        while (true) {
+            Delivery<T> delivery;
+            List<Delivery<T>> queued = new ArrayList<>();
+            synchronized (this) {
+                delivery = queue.pollFirst();
+                if (delivery == null || closed) {
+                    draining = false;
+                    return;
+                }
+                while (!heldBack.isEmpty() && queue.size() < capacity) {
+                    Delivery<T> next = heldBack.pollFirst();
+                    queue.addLast(next);
+                    queued.add(next);
+                }
+            }
+            queued.forEach(next -> next.queued.complete(null));
+            deliver(delivery);
+        }
+    }
+
+    private void recordPropagation(Envelope envelope) {
+        if (envelope == null) {
+            return;
+        }
+        long propagationMs = System.currentTimeMillis() - envelope.getPublishTimeMs();
+        metrics.propagation.record(TimeUnit.MILLISECONDS.toNanos(propagationMs));
+        LOGGER.debug("notification {} published by {} reached observer {} in {} ms", envelope.getId(), envelope.getPublisher(), observer, propagationMs);
+    }
+
+    private void deliver(Delivery<T> delivery) {
+        if (delivery.notification != null) {
+            long start = System.nanoTime();
+            Object event = ObservoEvents.beginObserverUpdate();
+            try {
+                ObserverUpdater.update(observer, delivery.notification);
+                metrics.update.recordSince(start);
+                Envelope envelope = delivery.notification.getEnvelope();
+                ObservoEvents.commitObserverUpdate(event, metrics.observable, observer, envelope == null ? null : envelope.getId(), delivery.notification.size());
+                recordPropagation(envelope);
+            } catch (Exception e) {
+                LOGGER.error("Exception while updating the observer {}: {}", observer, e);
+            }
+        }
+        if (delivery.version != Acknowledgement.NONE) {
+            try {
+                acknowledger.acknowledge(delivery.version);
+            } catch (Exception e) {
+                LOGGER.error("could not acknowledge version {}: {}", delivery.version, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of notifications waiting to be delivered, held back ones included
+     */
+    synchronized int getQueueDepth() {
+        return queue.size() + heldBack.size();
+    }
+
+    /**
+     * @return the number of notifications discarded on overflow
+     */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Discards the queued notifications and stops the delivery.
+     */
+    void close() {
+        List<Delivery<T>> discarded;
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            discarded = new ArrayList<>(heldBack);
+            heldBack.clear();
+        }
+        discarded.forEach(delivery -> delivery.queued.complete(null));
+    }
+
+    private static class Delivery<T> {
+
+        private Notification<T> notification;
+        private long version;
+        private CompletableFuture<Void> queued;
+
+        private Delivery(Notification<T> notification, long version) {
+            this.notification = notification;
+            this.version = version;
+        }
+
+        /**
+         * @param keepNotification whether the discarded notification should be delivered in place of a missing one
+         */
+        private void takeOver(Delivery<T> discarded, boolean keepNotification) {
+            version = Math.max(version, discarded.version);
+            if (keepNotification && notification == null) {
+                notification = discarded.notification;
+            }
+        }
+    }
+}
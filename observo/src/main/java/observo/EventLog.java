@@ -0,0 +1,122 @@
+package observo;
+
+import observo.utils.Futures;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Ordered log of notifications, stored as persistent sequential nodes under the log path:
+ * <pre>
+ * logPath/entry-0000000001
+ *        /entry-0000000002
+ *        ...
+ * </pre>
+ * Only the most recent entries are retained: each append deletes the entry leaving the retention window,
+ * and every {@code retainedEntries} appends, as well as on the first append of the process, all the entries older
+ * than the window are swept, so that the entries whose delete failed or was never issued do not pile up.
+ */
+class EventLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLog.class);
+
+    private static final String ENTRY_PREFIX = "entry-";
+
+    private final CuratorFramework client;
+    private final String logPath;
+    private final int retainedEntries;
+    private final AtomicBoolean swept = new AtomicBoolean(false);
+
+    EventLog(CuratorFramework client, String logPath, int retainedEntries) {
+        this.client = client;
+        this.logPath = logPath;
+        this.retainedEntries = retainedEntries;
+    }
+
+    String getLogPath() {
+        return logPath;
+    }
+
+    /**
+     * Appends the payload to the log in the background.
+     * @return the sequence number of the new entry
+     */
+    CompletableFuture<Long> append(byte[] payload) {
+        return Futures.background(callback -> client.create()
+                        .withMode(CreateMode.PERSISTENT_SEQUENTIAL)
+                        .inBackground(callback)
+                        .forPath(ZKPaths.makePath(logPath, ENTRY_PREFIX), payload))
+                .thenApply(event -> {
+                    long sequence = sequenceOf(ZKPaths.getNodeFromPath(event.getName()));
+                    if (sequence % retainedEntries == 0 || swept.compareAndSet(false, true)) {
+                        deleteEntriesUpTo(sequence - retainedEntries);
+                    } else {
+                        deleteEntry(sequence - retainedEntries);
+                    }
+                    return sequence;
+                });
+    }
+
+    /**
+     * @return the entries following the given sequence number, in order
+     */
+    static List<String> entriesAfter(long sequence, List<String> entries) {
+        return entries.stream()
+                .filter(entry -> entry.startsWith(ENTRY_PREFIX) && sequenceOf(entry) > sequence)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    static long lastSequence(List<String> entries) {
+        return entries.stream()
+                .filter(entry -> entry.startsWith(ENTRY_PREFIX))
+                .mapToLong(EventLog::sequenceOf)
+                .max()
+                .orElse(Acknowledgement.NONE);
+    }
+
+    static long sequenceOf(String entry) {
+        return Long.parseLong(entry.substring(ENTRY_PREFIX.length()));
+    }
+
+    private void deleteEntriesUpTo(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        Futures.background(callback -> client.getChildren().inBackground(callback).forPath(logPath))
+                .whenComplete((event, e) -> {
+                    if (e != null) {
+                        LOGGER.warn("could not list the log entries to delete: {}", e.toString());
+                        return;
+                    }
+                    event.getChildren().stream()
+                            .filter(entry -> entry.startsWith(ENTRY_PREFIX))
+                            .mapToLong(EventLog::sequenceOf)
+                            .filter(entry -> entry <= sequence)
+                            .forEach(this::deleteEntry);
+                });
+    }
+
+    private void deleteEntry(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        String entryPath = ZKPaths.makePath(logPath, String.format("%s%010d", ENTRY_PREFIX, sequence));
+        Futures.background(callback -> client.delete().inBackground(callback).forPath(entryPath))
+                .whenComplete((event, e) -> {
+                    if (Futures.unwrap(e) instanceof KeeperException.NoNodeException) {
+                        LOGGER.debug("log entry {} already deleted", sequence);
+                    } else if (e != null) {
+                        LOGGER.warn("could not delete log entry {}: {}", sequence, e.toString());
+                    }
+                });
+    }
+}
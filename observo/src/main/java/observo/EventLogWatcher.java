@@ -0,0 +1,237 @@
+package observo;
+
+import observo.conf.WatchMode;
+import observo.payload.PayloadReader;
+import observo.utils.Futures;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.AddWatchMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers every entry appended to the event log, in order.
+ * The watch is set on the children of the log path: a one-shot watch is set again by the same read that lists
+ * the entries, while a persistent watch is set once; either way no entry can be missed, and entries following the last seen one are read in pipelined batches.
+ * A single watcher feeds all the observers registered in this process.
+ */
+public class EventLogWatcher<T> implements CuratorWatcher, Subscription {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLogWatcher.class);
+
+    private final CuratorFramework client;
+    private final String logPath;
+    private final LocalObservers<T> localObservers;
+    private final PayloadReader payloadReader;
+    private final int batchSize;
+    private final WatchMode watchMode;
+    private volatile long lastSequence;
+    private volatile boolean enabled = true;
+    private boolean delivering = false;
+    private List<String> listedEntries;
+
+    public EventLogWatcher(CuratorFramework client, String logPath, LocalObservers<T> localObservers, PayloadReader payloadReader, int batchSize, WatchMode watchMode) throws Exception {
+        this.client = client;
+        this.logPath = logPath;
+        this.localObservers = localObservers;
+        this.payloadReader = payloadReader;
+        this.batchSize = batchSize;
+        this.watchMode = watchMode;
+        localObservers.getObserverNode().create();
+        if (watchMode == WatchMode.PERSISTENT) {
+            client.watchers().add().withMode(AddWatchMode.PERSISTENT).usingWatcher(this).forPath(logPath);
+        }
+        // only the entries appended after the registration are delivered
+        this.lastSequence = EventLog.lastSequence(setWatcherOnLog());
+    }
+
+    private List<String> setWatcherOnLog() throws Exception {
+        if (watchMode == WatchMode.PERSISTENT) {
+            return client.getChildren().forPath(logPath);
+        }
+        return client.getChildren().usingWatcher(this).forPath(logPath);
+    }
+
+    private CompletableFuture<CuratorEvent> listLog() {
+        if (watchMode == WatchMode.PERSISTENT) {
+            return Futures.background(callback -> client.getChildren().inBackground(callback).forPath(logPath));
+        }
+        return Futures.background(callback -> client.getChildren().usingWatcher(this).inBackground(callback).forPath(logPath));
+    }
+
+    @Override
+    public void disable() throws Exception {
+        localObservers.getObserverNode().delete();
+        enabled = false;
+        if (watchMode == WatchMode.PERSISTENT) {
+            client.watchers().remove(this).ofType(Watcher.WatcherType.Any).quietly().forPath(logPath);
+        }
+    }
+
+    /**
+     * Sets the watch again and delivers the entries appended meanwhile, all in the background;
+     * a persistent watch is added again in case the session has expired.
+     */
+    @Override
+    public CompletableFuture<Void> recover() {
+        CompletableFuture<Void> nodeRecreated = localObservers.getObserverNode().recreateIfExpired();
+        CompletableFuture<Void> watchAdded = watchMode == WatchMode.PERSISTENT
+                ? Futures.background(callback -> client.watchers().add().withMode(AddWatchMode.PERSISTENT).inBackground(callback).usingWatcher(this).forPath(logPath))
+                        .thenApply(ignored -> null)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> caughtUp = listLog().thenAccept(read -> submit(read.getChildren()));
+        return CompletableFuture.allOf(nodeRecreated, watchAdded, caughtUp);
+    }
+
+    @Override
+    public void process(WatchedEvent event) throws Exception {
+        LOGGER.debug("log change detected");
+
+        if (event.getType() == Watcher.Event.EventType.None) {
+            // the changes of the connection are handled by the recovery
+            return;
+        }
+
+        if (watchMode == WatchMode.PERSISTENT && event.getType() != Watcher.Event.EventType.NodeChildrenChanged) {
+            // the persistent watch also reports the changes of the log node itself and of the connection
+            return;
+        }
+
+        if (enabled) {
+            listLog()
+                    .thenAccept(read -> submit(read.getChildren()))
+                    .exceptionally(e -> {
+                        LOGGER.error("could not list the log entries: {}", e);
+                        return null;
+                    });
+        } else {
+            LOGGER.debug("watcher is disabled; no action will be performed");
+        }
+    }
+
+    private void submit(List<String> entries) {
+        synchronized (this) {
+            // entries listed while a delivery is in progress are picked up once it completes
+            if (delivering) {
+                listedEntries = entries;
+                return;
+            }
+            delivering = true;
+        }
+        deliver(entries);
+    }
+
+    private void deliver(List<String> entries) {
+        List<String> pending = EventLog.entriesAfter(lastSequence, entries);
+        if (pending.isEmpty() || !enabled) {
+            deliverListedEntries();
+            return;
+        }
+
+        long firstSequence = EventLog.sequenceOf(pending.get(0));
+        if (lastSequence != Acknowledgement.NONE && firstSequence > lastSequence + 1) {
+            LOGGER.warn("{} log entries were trimmed before being delivered", firstSequence - lastSequence - 1);
+        }
+
+        List<String> batch = pending.subList(0, Math.min(batchSize, pending.size()));
+        long start = System.nanoTime();
+        readBatch(batch)
+                .thenApply(payloads -> {
+                    PipelineMetrics metrics = localObservers.getMetrics();
+                    metrics.read.recordSince(start);
+                    for (byte[] payload : payloads) {
+                        metrics.bytesRead.increment(payload == null ? 0 : payload.length);
+                    }
+                    return payloads;
+                })
+                .thenCompose(payloads -> deliverBatch(batch, payloads))
+                .whenComplete((ignored, e) -> {
+                    if (e == null) {
+                        acknowledge();
+                        deliver(pending);
+                    } else {
+                        // retried on the next change of the log
+                        LOGGER.error("Exception while reading log entries: {}", e);
+                        deliverListedEntries();
+                    }
+                });
+    }
+
+    private void deliverListedEntries() {
+        List<String> entries;
+        synchronized (this) {
+            entries = listedEntries;
+            listedEntries = null;
+            if (entries == null) {
+                delivering = false;
+                return;
+            }
+        }
+        deliver(entries);
+    }
+
+    private CompletableFuture<byte[][]> readBatch(List<String> batch) {
+        CompletableFuture<byte[][]> future = new CompletableFuture<>();
+        byte[][] payloads = new byte[batch.size()][];
+        AtomicInteger remaining = new AtomicInteger(batch.size());
+
+        BackgroundCallback callback = (c, event) -> {
+            int index = (Integer) event.getContext();
+            if (event.getResultCode() == KeeperException.Code.NONODE.intValue()) {
+                LOGGER.warn("log entry {} was trimmed before being delivered", batch.get(index));
+            } else if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(event.getResultCode()), event.getPath()));
+                return;
+            } else {
+                payloads[index] = event.getData();
+            }
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(payloads);
+            }
+        };
+
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                client.getData().inBackground(callback, i).forPath(ZKPaths.makePath(logPath, batch.get(i)));
+            }
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private CompletableFuture<Void> deliverBatch(List<String> batch, byte[][] payloads) {
+        CompletableFuture<Void> delivered = CompletableFuture.completedFuture(null);
+        for (int i = 0; i < payloads.length; i++) {
+            byte[] payload = payloads[i];
+            long sequence = EventLog.sequenceOf(batch.get(i));
+            if (payload != null) {
+                delivered = delivered
+                        .thenCompose(ignored -> payloadReader.read(payload))
+                        // the next entries are read once the observers have room for this one
+                        .thenCompose(read -> localObservers.submit(read, Acknowledgement.NONE))
+                        .exceptionally(e -> {
+                            LOGGER.error("could not read log entry {}: {}", sequence, e);
+                            return null;
+                        });
+            }
+            delivered = delivered.thenRun(() -> lastSequence = sequence);
+        }
+        return delivered;
+    }
+
+    private void acknowledge() {
+        // acknowledged once the local observers have processed the entries delivered so far
+        localObservers.submit(null, lastSequence);
+    }
+}
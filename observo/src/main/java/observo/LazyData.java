@@ -0,0 +1,29 @@
+package observo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Handle to a notified item, decoded on first access; the decoded item is shared by all the observers of this process.
+ */
+public class LazyData<T> {
+
+    private final Notification<T> notification;
+    private final int index;
+
+    LazyData(Notification<T> notification, int index) {
+        this.notification = notification;
+        this.index = index;
+    }
+
+    public T get() throws IOException {
+        return notification.getItem(index);
+    }
+
+    /**
+     * @return a read-only view of the encoded item
+     */
+    public ByteBuffer getBytes() {
+        return notification.getItemBuffer(index);
+    }
+}
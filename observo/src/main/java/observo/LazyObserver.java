@@ -0,0 +1,17 @@
+package observo;
+
+/**
+ * Observer receiving a handle to the notified data, decoded only if and when it is first accessed;
+ * the items of a batch are received one by one.
+ */
+@FunctionalInterface
+public interface LazyObserver<T> extends Observer<T> {
+
+    void updateLazy(LazyData<T> data);
+
+    @Override
+    default void update(T data) {
+        throw new UnsupportedOperationException("lazy observers only receive the data through a handle");
+    }
+
+}
@@ -0,0 +1,188 @@
+package observo;
+
+import observo.codec.Codec;
+import observo.conf.ObservoConf;
+import observo.payload.Payload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The observers of an observable registered in this process, all fed by a single watcher:
+ * each notification is read and decoded once, then fanned out to the observers' dispatch lanes.
+ * The process acknowledges a version through its single observer node once every lane has processed it;
+ * the acknowledgement is written outside of the lock of the observers, not to hold up the event thread feeding them.
+ * The latest notification is kept, to be handed to the observers registered later when seeding is enabled.
+ */
+class LocalObservers<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalObservers.class);
+
+    private final ObserverNode observerNode;
+    private final Codec<T> codec;
+    private final ObservoConf observoConf;
+    private final boolean seedNewObservers;
+    private final PipelineMetrics metrics;
+    private final Map<Observer<T>, DispatchLane<T>> lanes = new LinkedHashMap<>();
+    private final Map<DispatchLane<T>, Long> processedVersions = new IdentityHashMap<>();
+    private final Object ackLock = new Object();
+    private long lastSubmitted = Acknowledgement.NONE;
+    private long lastAcked = Acknowledgement.NONE;
+    private long lastWritten = Acknowledgement.NONE;
+    private Notification<T> latest;
+    private long latestVersion = Acknowledgement.NONE;
+
+    /**
+     * @param seedNewObservers whether the observers are handed the latest notification on registration
+     */
+    LocalObservers(ObserverNode observerNode, Codec<T> codec, ObservoConf observoConf, boolean seedNewObservers, PipelineMetrics metrics) {
+        this.observerNode = observerNode;
+        this.codec = codec;
+        this.observoConf = observoConf;
+        this.seedNewObservers = seedNewObservers;
+        this.metrics = metrics;
+    }
+
+    ObserverNode getObserverNode() {
+        return observerNode;
+    }
+
+    PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    synchronized void add(Observer<T> observer) {
+        DispatchLane<T> lane = new DispatchLane<>(observer, version -> processed(observer, version),
+                observoConf.getDispatchExecutor(), observoConf.getDispatchQueueCapacity(), observoConf.getOverflowPolicy(), metrics);
+        DispatchLane<T> previous = lanes.put(observer, lane);
+        if (previous != null) {
+            previous.close();
+            processedVersions.remove(previous);
+        }
+        // the versions notified before the registration are not waited for
+        processedVersions.put(lane, lastSubmitted);
+        if (seedNewObservers && latest != null) {
+            lane.submit(latest, latestVersion);
+        }
+    }
+
+    /**
+     * @return false if the observer was not registered
+     */
+    boolean remove(Observer<T> observer) {
+        DispatchLane<T> lane;
+        long toAcknowledge;
+        synchronized (this) {
+            lane = lanes.remove(observer);
+            if (lane == null) {
+                return false;
+            }
+            processedVersions.remove(lane);
+            toAcknowledge = processedVersionToAcknowledge();
+        }
+        lane.close();
+        acknowledge(toAcknowledge);
+        return true;
+    }
+
+    synchronized boolean isEmpty() {
+        return lanes.isEmpty();
+    }
+
+    synchronized Set<Observer<T>> getObservers() {
+        return new LinkedHashSet<>(lanes.keySet());
+    }
+
+    synchronized int getQueueDepth(Observer<T> observer) {
+        DispatchLane<T> lane = lanes.get(observer);
+        return lane == null ? 0 : lane.getQueueDepth();
+    }
+
+    /**
+     * @param payload the notified data, or null to only acknowledge
+     * @param version the version to acknowledge once all the observers have processed the payload, or {@link Acknowledgement#NONE}
+     * @return completed once the notification has entered the queue of every observer
+     */
+    CompletableFuture<Void> submit(Payload payload, long version) {
+        Notification<T> notification = payload == null ? null : new Notification<>(payload, codec, metrics);
+        List<DispatchLane<T>> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(lanes.values());
+            lastSubmitted = Math.max(lastSubmitted, version);
+            if (notification != null) {
+                latest = notification;
+                latestVersion = version;
+            }
+        }
+        CompletableFuture<?>[] queued = new CompletableFuture<?>[targets.size()];
+        for (int i = 0; i < queued.length; i++) {
+            queued[i] = targets.get(i).submit(notification, version);
+        }
+        return CompletableFuture.allOf(queued);
+    }
+
+    /**
+     * @return the latest notification submitted, null if none has been
+     */
+    synchronized Notification<T> getLatest() {
+        return latest;
+    }
+
+    private void processed(Observer<T> observer, long version) {
+        long toAcknowledge;
+        synchronized (this) {
+            DispatchLane<T> lane = lanes.get(observer);
+            if (lane == null) {
+                return;
+            }
+            processedVersions.computeIfPresent(lane, (l, processed) -> Math.max(processed, version));
+            toAcknowledge = processedVersionToAcknowledge();
+        }
+        acknowledge(toAcknowledge);
+    }
+
+    /**
+     * @return the version processed by every lane if not acknowledged yet, {@link Acknowledgement#NONE} otherwise
+     */
+    private long processedVersionToAcknowledge() {
+        if (processedVersions.isEmpty()) {
+            return Acknowledgement.NONE;
+        }
+        long processed = processedVersions.values().stream().mapToLong(Long::longValue).min().getAsLong();
+        if (processed <= lastAcked) {
+            return Acknowledgement.NONE;
+        }
+        lastAcked = processed;
+        return processed;
+    }
+
+    private void acknowledge(long version) {
+        if (version == Acknowledgement.NONE) {
+            return;
+        }
+        // the writes are serialized, so that an older version never overwrites a newer one
+        synchronized (ackLock) {
+            if (version <= lastWritten) {
+                return;
+            }
+            try {
+                observerNode.acknowledge(version);
+                lastWritten = version;
+            } catch (Exception e) {
+                LOGGER.error("could not acknowledge version {}: {}", version, e);
+                synchronized (this) {
+                    // acknowledged again once another version has been processed
+                    lastAcked = Math.min(lastAcked, lastWritten);
+                }
+            }
+        }
+    }
+}
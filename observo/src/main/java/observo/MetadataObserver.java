@@ -0,0 +1,22 @@
+package observo;
+
+import observo.payload.Envelope;
+
+/**
+ * Observer receiving, along with the data, the envelope identifying the notification it comes from;
+ * the items of a batch are received one by one, with the same envelope.
+ */
+@FunctionalInterface
+public interface MetadataObserver<T> extends Observer<T> {
+
+    /**
+     * @param envelope identity of the notification; null if it was written by an older version, or seeded from a snapshot
+     */
+    void update(T data, Envelope envelope);
+
+    @Override
+    default void update(T data) {
+        throw new UnsupportedOperationException("metadata observers receive the data along with its envelope");
+    }
+
+}
@@ -0,0 +1,97 @@
+package observo;
+
+import observo.codec.Codec;
+import observo.jfr.ObservoEvents;
+import observo.payload.Envelope;
+import observo.payload.Payload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A notified payload shared by the observers of this process: each item is decoded once, by the first observer
+ * needing it, and the decoded item is then handed to all of them. Observers of the encoded data skip the decoding.
+ */
+class Notification<T> {
+
+    private final Payload payload;
+    private final Codec<T> codec;
+    private final PipelineMetrics metrics;
+    private List<ByteBuffer> itemBuffers;
+    private Object[] items;
+    private boolean[] decoded;
+
+    Notification(Payload payload, Codec<T> codec) {
+        this(payload, codec, PipelineMetrics.NONE);
+    }
+
+    Notification(Payload payload, Codec<T> codec, PipelineMetrics metrics) {
+        this.payload = payload;
+        this.codec = codec;
+        this.metrics = metrics;
+    }
+
+    boolean isBatch() {
+        return payload.isBatch();
+    }
+
+    Envelope getEnvelope() {
+        return payload.getEnvelope();
+    }
+
+    synchronized int size() {
+        return buffers().size();
+    }
+
+    /**
+     * @return a read-only view of the encoded item, with its own position and limit
+     */
+    synchronized ByteBuffer getItemBuffer(int index) {
+        return buffers().get(index).duplicate();
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized T getItem(int index) throws IOException {
+        if (items == null) {
+            items = new Object[size()];
+            decoded = new boolean[size()];
+        }
+        if (!decoded[index]) {
+            byte[] bytes = bytes(index);
+            long start = System.nanoTime();
+            Object event = ObservoEvents.beginDecode();
+            items[index] = codec.decode(bytes);
+            metrics.decode.recordSince(start);
+            ObservoEvents.commitDecode(event, metrics.observable, bytes.length);
+            decoded[index] = true;
+        }
+        return (T) items[index];
+    }
+
+    synchronized List<T> getItems() throws IOException {
+        List<T> all = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            all.add(getItem(i));
+        }
+        return all;
+    }
+
+    private List<ByteBuffer> buffers() {
+        if (itemBuffers == null) {
+            itemBuffers = payload.getItemBuffers();
+        }
+        return itemBuffers;
+    }
+
+    private byte[] bytes(int index) {
+        if (!payload.isBatch()) {
+            return payload.getBody();
+        }
+        ByteBuffer buffer = getItemBuffer(index);
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
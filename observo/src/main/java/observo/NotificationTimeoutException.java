@@ -0,0 +1,26 @@
+package observo;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown when the observers required by the acknowledgement policy did not acknowledge a notification in time.
+ */
+public class NotificationTimeoutException extends TimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    // the report is not serializable; a deserialized exception carries none
+    private final transient AckReport ackReport;
+
+    public NotificationTimeoutException(String message, AckReport ackReport) {
+        super(message);
+        this.ackReport = ackReport;
+    }
+
+    /**
+     * @return the acknowledgements received before the timeout, null once the exception has been deserialized
+     */
+    public AckReport getAckReport() {
+        return ackReport;
+    }
+}
@@ -1,5 +1,9 @@
 package observo;
 
+import observo.conf.AckPolicy;
+import observo.payload.CompressionStats;
+
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -7,6 +11,28 @@ public interface Observable<T> {
 
     void registerObserver(Observer<T> observer);
 
+    /**
+     * Registers an observer receiving the encoded data; it is unregistered as any other observer.
+     */
+    default void registerRawObserver(RawObserver<T> observer) {
+        registerObserver(observer);
+    }
+
+    /**
+     * Registers an observer receiving the data decoded on first access; it is unregistered as any other observer.
+     */
+    default void registerLazyObserver(LazyObserver<T> observer) {
+        registerObserver(observer);
+    }
+
+    /**
+     * Registers an observer receiving the envelope of each notification along with the data;
+     * it is unregistered as any other observer.
+     */
+    default void registerMetadataObserver(MetadataObserver<T> observer) {
+        registerObserver(observer);
+    }
+
     void unregisterObserver(Observer<T> observer);
 
     void unregisterAllObservers();
@@ -18,4 +44,34 @@ public interface Observable<T> {
     AsyncTask notifyObserversAsync();
 
     AsyncTask notifyObserversAsync(T data);
+
+    /**
+     * Notifies the data, completing once the observers required by the given policy have acknowledged it,
+     * instead of the policy of the observable.
+     */
+    void notifyObservers(T data, AckPolicy ackPolicy) throws InterruptedException, ExecutionException, TimeoutException;
+
+    AsyncTask notifyObserversAsync(T data, AckPolicy ackPolicy);
+
+    /**
+     * Publishes all the items at once, waiting for the observers to acknowledge the whole batch.
+     */
+    void notifyObserversBatch(List<T> batch) throws InterruptedException, ExecutionException, TimeoutException;
+
+    AsyncTask notifyObserversBatchAsync(List<T> batch);
+
+    AsyncTask notifyObserversBatchAsync(List<T> batch, AckPolicy ackPolicy);
+
+    /**
+     * @return the latest notified data, or the last item of the latest batch; null if nothing has been notified yet.
+     * Served locally while observers are registered in this process, read from zookeeper otherwise.
+     */
+    T getCurrentValue() throws Exception;
+
+    CompressionStats getCompressionStats();
+
+    /**
+     * @return the number of notifications waiting to be delivered to the registered observer, 0 if it is not registered
+     */
+    int getQueueDepth(Observer<T> observer);
 }
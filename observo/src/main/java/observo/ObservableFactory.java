@@ -1,5 +1,7 @@
 package observo;
 
+import observo.codec.Codec;
+import observo.codec.JavaSerializationCodec;
 import observo.conf.ObservoConf;
 import observo.conf.ZookeeperConf;
 import observo.utils.HostnameProvider;
@@ -8,9 +10,10 @@ import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.retry.RetryNTimes;
 
+import java.io.Closeable;
 import java.io.Serializable;
 
-public class ObservableFactory {
+public class ObservableFactory implements Closeable {
 
     private static final String NAMESPACE_PREFIX = "observo";
 
@@ -24,9 +27,12 @@ public class ObservableFactory {
 
     public ObservableFactory(ZookeeperConf zookeeperConf, ObservoConf observoConf, String nameSpaceSuffix, HostnameProvider hostnameProvider) {
         this.observoConf = observoConf;
+        // resolved first, so that a failure does not leave a client started
+        this.hostname = hostnameProvider.getHostname();
         RetryNTimes retryPolicy = new RetryNTimes(zookeeperConf.getRetryTimes(), zookeeperConf.getRetryMsSleep());
         CuratorFramework client = CuratorFrameworkFactory.builder()
                 .connectionTimeoutMs(zookeeperConf.getConnectionTimeoutMs())
+                .sessionTimeoutMs(zookeeperConf.getSessionTimeoutMs())
                 .namespace(NAMESPACE_PREFIX + "/" + nameSpaceSuffix)
                 .connectString(zookeeperConf.getConnectString())
                 .retryPolicy(retryPolicy)
@@ -35,12 +41,28 @@ public class ObservableFactory {
         client.start();
 
         this.client = client;
-        this.hostname = hostnameProvider.getHostname();
     }
 
     public <T extends Serializable> Observable<T> createObservable(String name, Class<T> dataType) {
+        return createObservable(name, new JavaSerializationCodec<>(dataType));
+    }
+
+    public <T> Observable<T> createObservable(String name, Codec<T> codec) {
         String path = "/" + name;
-        return new ObservableImpl<>(client, observoConf, hostname, path, dataType);
+        return new ObservableImpl<>(client, observoConf, hostname, path, codec);
+    }
+
+    CuratorFramework getClient() {
+        return client;
+    }
+
+    /**
+     * Closes the connection to zookeeper; the observables created by the factory stop working,
+     * and the observers registered through them are no longer waited for.
+     */
+    @Override
+    public void close() {
+        client.close();
     }
 
 }
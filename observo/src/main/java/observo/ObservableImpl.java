@@ -1,20 +1,47 @@
 package observo;
 
+import observo.codec.Codec;
+import observo.conf.AckPolicy;
+import observo.conf.AckMode;
+import observo.conf.DeliveryMode;
 import observo.conf.ObservoConf;
+import observo.conf.PublishMode;
+import observo.jfr.ObservoEvents;
 import observo.lock.DistributedLock;
-import observo.utils.Serializer;
+import observo.payload.ChunkStore;
+import observo.payload.CompressionStats;
+import observo.payload.Envelope;
+import observo.payload.Payload;
+import observo.payload.PayloadReader;
+import observo.payload.PayloadWriter;
+import observo.payload.SnapshotStore;
+import observo.payload.WriteAheadLog;
+import observo.utils.Futures;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
-public class ObservableImpl<T extends Serializable> implements Observable<T> {
+public class ObservableImpl<T> implements Observable<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ObservableImpl.class);
 
     private final CuratorFramework client;
@@ -22,40 +49,114 @@ public class ObservableImpl<T extends Serializable> implements Observable<T> {
     private final String hostname;
     private final String path;
     private final String observersPath;
-    private final Class<T> dataType;
-    private final Map<Observer<T>, ObserverWatcher> observers = new ConcurrentHashMap<>();
+    private final String acksPath;
+    private final Codec<T> codec;
+    private final LocalObservers<T> localObservers;
+    private final Object subscriptionLock = new Object();
+    private Subscription subscription;
     private final DistributedLock distributedLock;
-
-    public ObservableImpl(CuratorFramework client, ObservoConf observoConf, String hostname, String path, Class<T> dataType) {
+    private final PayloadWriter payloadWriter;
+    private final PayloadReader payloadReader;
+    private final EventLog eventLog;
+    private final SnapshotStore snapshotStore;
+    private final WriteAheadLog writeAheadLog;
+    private final PipelineMetrics metrics;
+    private final ScheduledExecutorService scheduler;
+    private final Executor publishExecutor;
+    private final Executor lockExecutor;
+    private final Object publishOrder = new Object();
+    private CompletableFuture<Void> lastIssued = CompletableFuture.completedFuture(null);
+    private final Map<UUID, Consumer<Throwable>> inFlight = new ConcurrentHashMap<>();
+    private volatile boolean connected = true;
+
+    public ObservableImpl(CuratorFramework client, ObservoConf observoConf, String hostname, String path, Codec<T> codec) {
         this.client = client;
         this.observoConf = observoConf;
         this.hostname = hostname;
         this.path = path;
         this.observersPath = path + "/observers";
-        this.dataType = dataType;
-        this.distributedLock = new DistributedLock(client, path + "/lock", observoConf.getLockTimeoutMs());
-        createObserversPathIfItDoesNotExists();
+        this.acksPath = observoConf.getAckMode() == AckMode.AGGREGATED ? path + "/acks" : null;
+        this.codec = codec;
+        this.scheduler = observoConf.getScheduler();
+        this.publishExecutor = observoConf.getPublishExecutor();
+        this.lockExecutor = observoConf.getLockExecutor();
+        boolean eventLogDelivery = observoConf.getDeliveryMode() == DeliveryMode.EVENT_LOG;
+        this.snapshotStore = observoConf.getSnapshotDirectory() != null && !eventLogDelivery
+                ? new SnapshotStore(observoConf.getSnapshotDirectory().resolve(localFileName(client, path, ".snapshot")))
+                : null;
+        this.writeAheadLog = observoConf.getWriteAheadLogDirectory() != null
+                ? openWriteAheadLog(observoConf.getWriteAheadLogDirectory().resolve(localFileName(client, path, ".wal")))
+                : null;
+        this.metrics = new PipelineMetrics(observoConf.getMetricsRegistry(), client.getNamespace() + path);
+        ObservoEvents.register();
+        this.localObservers = new LocalObservers<>(new ObserverNode(client, observersPath, hostname + "-", acksPath), codec, observoConf, snapshotStore != null, metrics);
+        this.distributedLock = new DistributedLock(client, path + "/lock", observoConf.getLockTimeoutMs(), metrics.lockWait);
+        this.eventLog = eventLogDelivery ? new EventLog(client, path + "/log", observoConf.getEventLogRetainedEntries()) : null;
+        // chunk sets and bases must outlive the log entries pointing to them
+        int retainedChunkSets = eventLogDelivery ? observoConf.getEventLogRetainedEntries() + 1 : 2;
+        ChunkStore chunkStore = new ChunkStore(client, path + "/chunks", observoConf.getChunkSizeBytes(), retainedChunkSets);
+        // bases are read whatever the configuration of this process, as other publishers may write deltas
+        int baseChunkSizeBytes = observoConf.getChunkSizeBytes() > 0 ? observoConf.getChunkSizeBytes() : PayloadWriter.MAX_NODE_DATA_BYTES;
+        ChunkStore baseStore = new ChunkStore(client, path + "/bases", baseChunkSizeBytes, retainedChunkSets);
+        this.payloadWriter = observoConf.isDeltaEncoding()
+                ? new PayloadWriter(observoConf.getCompression(), observoConf.getCompressionThresholdBytes(), chunkStore,
+                        baseStore, observoConf.getDeltaThresholdBytes(), observoConf.getDeltaRebaseRatio())
+                : new PayloadWriter(observoConf.getCompression(), observoConf.getCompressionThresholdBytes(), chunkStore);
+        this.payloadReader = new PayloadReader(chunkStore, baseStore);
+        createPathIfItDoesNotExists(observersPath);
+        if (eventLog != null) {
+            createPathIfItDoesNotExists(eventLog.getLogPath());
+        }
+        if (acksPath != null) {
+            createPathIfItDoesNotExists(acksPath);
+        }
+
+        client.getConnectionStateListenable().addListener((c, newState) -> connectionStateChanged(newState));
+        if (writeAheadLog != null) {
+            // left by a previous run of the process
+            replayJournal();
+        }
 
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
                 unregisterAllObservers();
+                if (writeAheadLog != null) {
+                    try {
+                        writeAheadLog.close();
+                    } catch (IOException e) {
+                        LOGGER.error("could not close the write-ahead log: {}", e);
+                    }
+                }
             }
         });
     }
 
-    private void createObserversPathIfItDoesNotExists() {
+    private static String localFileName(CuratorFramework client, String path, String extension) {
+        return (client.getNamespace() + path).replace('/', '_') + extension;
+    }
+
+    private static WriteAheadLog openWriteAheadLog(Path file) {
         try {
-            if (client.checkExists().forPath(observersPath) == null) {
-                client.create().creatingParentsIfNeeded().forPath(observersPath);
+            return new WriteAheadLog(file);
+        } catch (IOException e) {
+            // publishing without the journal would lose the notifications it was configured for
+            throw new UncheckedIOException("could not open the write-ahead log " + file, e);
+        }
+    }
+
+    private void createPathIfItDoesNotExists(String pathToCreate) {
+        try {
+            if (client.checkExists().forPath(pathToCreate) == null) {
+                client.create().creatingParentsIfNeeded().forPath(pathToCreate);
             }
         } catch (Exception e) {
-            LOGGER.error("could not create observers path: {}", e);
+            LOGGER.error("could not create path {}: {}", pathToCreate, e);
         }
     }
 
     Set<Observer<T>> getObservers() {
-        return observers.keySet();
+        return localObservers.getObservers();
     }
 
     @Override
@@ -63,19 +164,25 @@ public class ObservableImpl<T extends Serializable> implements Observable<T> {
 
         distributedLock.lockedBlock(() -> {
 
-            try {
+            synchronized (subscriptionLock) {
+                try {
 
-                // create observer if does not exists
-                String childPath = generateUniqueChildPath();
+                    // each observer is updated on its own lane, off the zookeeper event thread
+                    localObservers.add(observer);
 
-                // create and set watcher
-                ObserverWatcher observerWatcher = new ObserverWatcher(client, path, childPath, observer, dataType);
-                observers.put(observer, observerWatcher);
+                    // the observers of this process share a single observer node and watcher
+                    if (subscription == null) {
+                        subscription = eventLog == null
+                                ? new ObserverWatcher<>(client, path, localObservers, payloadReader, observoConf.getWatchMode(), snapshotStore)
+                                : new EventLogWatcher<>(client, eventLog.getLogPath(), localObservers, payloadReader, observoConf.getEventLogBatchSize(), observoConf.getWatchMode());
+                    }
 
-                LOGGER.debug("{} registered", observer);
+                    LOGGER.debug("{} registered", observer);
 
-            } catch(Exception e) {
-                LOGGER.error("Exception while registering observer: {} {}", observer, e);
+                } catch(Exception e) {
+                    LOGGER.error("Exception while registering observer: {} {}", observer, e);
+                    localObservers.remove(observer);
+                }
             }
 
         });
@@ -89,27 +196,30 @@ public class ObservableImpl<T extends Serializable> implements Observable<T> {
 
     @Override
     public void unregisterAllObservers() {
-        if (observers.size() > 0) {
-            distributedLock.lockedBlock(() -> observers.keySet().forEach(observer -> unregistering(observer)));
+        if (!localObservers.isEmpty()) {
+            distributedLock.lockedBlock(() -> localObservers.getObservers().forEach(observer -> unregistering(observer)));
         }
     }
 
-    private void unregistering(Observer observer) {
-        try {
+    private void unregistering(Observer<T> observer) {
+        synchronized (subscriptionLock) {
+            try {
 
-            // delete observer node
-            ObserverWatcher observerWatcher = observers.remove(observer);
-            if (observerWatcher == null) {
-                LOGGER.error("the observer {} was not found within the list of registered observers {}", observer, observers.keySet());
+                if (!localObservers.remove(observer)) {
+                    LOGGER.error("the observer {} was not found within the list of registered observers {}", observer, localObservers.getObservers());
 
-            } else {
-                // disable watcher
-                observerWatcher.disable();
-                LOGGER.debug("{} unregistered", observer);
-            }
+                } else {
+                    // disable watcher and delete observer node with the last observer
+                    if (localObservers.isEmpty() && subscription != null) {
+                        subscription.disable();
+                        subscription = null;
+                    }
+                    LOGGER.debug("{} unregistered", observer);
+                }
 
-        } catch(Exception e) {
-            LOGGER.error("Exception while unregistering observer: {} {}", observer, e);
+            } catch(Exception e) {
+                LOGGER.error("Exception while unregistering observer: {} {}", observer, e);
+            }
         }
 
     }
@@ -132,72 +242,514 @@ public class ObservableImpl<T extends Serializable> implements Observable<T> {
 
     @Override
     public AsyncTask notifyObserversAsync(T data) {
+        return notifyObserversAsync(data, observoConf.getAckPolicy());
+    }
 
-        AsyncTaskImpl asyncTask = new AsyncTaskImpl();
-        distributedLock.acquireLock();
+    @Override
+    public void notifyObservers(T data, AckPolicy ackPolicy) throws InterruptedException, ExecutionException, TimeoutException {
+        AsyncTask asyncTask = notifyObserversAsync(data, ackPolicy);
+        asyncTask.join(observoConf.getNotificationTimeoutMs(), TimeUnit.MILLISECONDS);
+    }
 
-        try {
+    @Override
+    public AsyncTask notifyObserversAsync(T data, AckPolicy ackPolicy) {
+        return notifyAsync(() -> Collections.singletonList(codec.encode(data)), false, ackPolicy);
+    }
 
-            // get observers
-            List<String> observers = client.getChildren().forPath(observersPath);
-            LOGGER.debug("observers: {}", observers);
+    @Override
+    public void notifyObserversBatch(List<T> batch) throws InterruptedException, ExecutionException, TimeoutException {
+        AsyncTask asyncTask = notifyObserversBatchAsync(batch);
+        asyncTask.join(observoConf.getNotificationTimeoutMs(), TimeUnit.MILLISECONDS);
+    }
 
-            // set awaiting action for all observers to be notified
+    @Override
+    public AsyncTask notifyObserversBatchAsync(List<T> batch) {
+        return notifyObserversBatchAsync(batch, observoConf.getAckPolicy());
+    }
 
-            CountDownLatch remainingToNotify = new CountDownLatch(observers.size());
+    @Override
+    public AsyncTask notifyObserversBatchAsync(List<T> batch, AckPolicy ackPolicy) {
+        return notifyAsync(() -> {
+            List<byte[]> encodedItems = new ArrayList<>(batch.size());
+            for (T data : batch) {
+                encodedItems.add(codec.encode(data));
+            }
+            return encodedItems;
+        }, true, ackPolicy);
+    }
 
-            Runnable runnable = () -> {
+    /**
+     * Encodes the items along with the payload, off the caller thread, unless they are to be journaled first.
+     */
+    private AsyncTask notifyAsync(Encoding encoding, boolean batch, AckPolicy ackPolicy) {
+        UUID notificationId = UUID.randomUUID();
+        if (writeAheadLog == null) {
+            return notifyAsync(notificationId, envelope -> frame(encoding.encode(), batch, envelope), ackPolicy, null);
+        }
+        List<byte[]> items;
+        try {
+            items = encoding.encode();
+        } catch (Exception e) {
+            LOGGER.error("could not encode the notification: {}", e);
+            metrics.errors.increment(1);
+            AsyncTaskImpl asyncTask = new AsyncTaskImpl();
+            asyncTask.setNotificationId(notificationId);
+            asyncTask.completeExceptionally(e);
+            return asyncTask;
+        }
+        return notifyAsync(notificationId, envelope -> frame(items, batch, envelope), ackPolicy,
+                () -> writeAheadLog.append(notificationId, batch, items));
+    }
 
-                boolean notifiedToAll = false;
-                try {
-                    notifiedToAll = remainingToNotify.await(observoConf.getNotificationTimeoutMs(), TimeUnit.MILLISECONDS);
+    private byte[] frame(List<byte[]> items, boolean batch, Envelope envelope) throws Exception {
+        return batch ? payloadWriter.writeBatch(items, envelope) : payloadWriter.write(items.get(0), envelope);
+    }
+
+    /**
+     * Publishes again, in order, the journaled notifications that were not written to zookeeper,
+     * or only the latest of them when coalescing.
+     */
+    private void replayJournal() {
+        List<WriteAheadLog.Entry> entries = writeAheadLog.getPending();
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (observoConf.isWriteAheadLogCoalescing()) {
+            entries.subList(0, entries.size() - 1).forEach(entry -> writeAheadLog.commit(entry.getSequence()));
+            entries = entries.subList(entries.size() - 1, entries.size());
+        }
+        LOGGER.info("publishing again {} journaled notifications of {}", entries.size(), path);
+        for (WriteAheadLog.Entry entry : entries) {
+            notifyAsync(entry.getNotificationId(), envelope -> frame(entry.getItems(), entry.isBatch(), envelope), observoConf.getAckPolicy(),
+                    () -> CompletableFuture.completedFuture(entry.getSequence()))
+                    .whenError(e -> LOGGER.warn("journaled notification {} is kept for later: {}", entry.getNotificationId(), e.toString()));
+        }
+    }
 
-                    if (notifiedToAll) {
-                        LOGGER.info("observers were successfully notified");
-                        distributedLock.releaseLock();
-                        asyncTask.completeSuccessfully();
+    /**
+     * Runs every step in the background: the caller only pays for chaining the notification.
+     * Each notification starts once the previous one has issued its write, so that the notifications
+     * are published in the order they were requested, while their acknowledgements are awaited concurrently.
+     * A journaled notification is published once synced, and committed once written; it is kept for being published
+     * again if the connection is lost before.
+     * @param payloadWriting writes the payload to be published
+     * @param ackPolicy observers whose acknowledgement completes the notification
+     * @param journaling journals the notification, in publish order; null if not journaled
+     */
+    private AsyncTask notifyAsync(UUID notificationId, PayloadWriting payloadWriting, AckPolicy ackPolicy, Journaling journaling) {
 
-                    } else {
-                        String timeoutMsg = "could not notify all the observers within " + observoConf.getNotificationTimeoutMs() + " ms";
-                        LOGGER.error(timeoutMsg);
-                        asyncTask.completeExceptionally(new TimeoutException(timeoutMsg));
+        AsyncTaskImpl asyncTask = new AsyncTaskImpl();
+        asyncTask.setNotificationId(notificationId);
+        AtomicBoolean finished = new AtomicBoolean(false);
+        AtomicReference<ScheduledFuture<?>> pendingTimeout = new AtomicReference<>();
+        AtomicReference<AckTracker> pendingAcks = new AtomicReference<>();
+        boolean locked = observoConf.getPublishMode() == PublishMode.LOCKED;
+        // set once the lock is acquired, and cleared by whichever outcome releases it
+        AtomicBoolean lockHeld = new AtomicBoolean(false);
+        CompletableFuture<Void> issued = new CompletableFuture<>();
+
+        // failed at once when the connection is suspended or lost, rather than left to time out;
+        // the stages not started yet are skipped
+        inFlight.put(notificationId, cause -> {
+            if (finished.compareAndSet(false, true)) {
+                LOGGER.error("could not notify the observers: {}", cause.toString());
+                metrics.errors.increment(1);
+                ScheduledFuture<?> timeout = pendingTimeout.get();
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                AckTracker ackTracker = pendingAcks.get();
+                if (ackTracker != null) {
+                    ackTracker.cancel();
+                    asyncTask.setAckReport(ackTracker.report());
+                }
+                asyncTask.completeExceptionally(cause);
+                // releasing blocks until the connection is back, as acquiring does
+                lockExecutor.execute(() -> releaseLockIf(lockHeld));
+            }
+        });
+        asyncTask.handle((ignored, e) -> inFlight.remove(notificationId));
+
+        CompletableFuture<Void> previousIssued;
+        CompletableFuture<Long> journaled;
+        boolean disconnected;
+        synchronized (publishOrder) {
+            previousIssued = lastIssued;
+            lastIssued = issued;
+            journaled = journaling == null ? CompletableFuture.completedFuture(null) : journaling.journal();
+            disconnected = !connected;
+        }
+        if (disconnected) {
+            scheduler.execute(() -> abort(notificationId, KeeperException.create(KeeperException.Code.CONNECTIONLOSS, path)));
+        }
+
+        previousIssued.thenCombine(journaled, (ignored, sequence) -> sequence)
+
+                .thenCompose(ignored -> {
+                    checkNotFinished(finished, notificationId);
+                    return locked
+                            ? distributedLock.acquireLockAsync(lockExecutor)
+                            : CompletableFuture.<Void>completedFuture(null);
+                })
+
+                // get observers
+                .thenCompose(ignored -> {
+                    lockHeld.set(locked);
+                    if (finished.get()) {
+                        // aborted while waiting for the lock
+                        releaseLockIf(lockHeld);
                     }
+                    checkNotFinished(finished, notificationId);
+                    return Futures.background(callback -> client.getChildren().inBackground(callback).forPath(observersPath));
+                })
+
+                .thenCompose(event -> {
+                    checkNotFinished(finished, notificationId);
+                    List<String> observers = event.getChildren();
+                    LOGGER.debug("observers: {}", observers);
+
+                    // set awaiting action for all observers to be notified
+                    AckTracker ackTracker = new AckTracker(observers, ackPolicy);
+                    pendingAcks.set(ackTracker);
+
+                    ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            ackTracker.cancel();
+                            AckReport ackReport = ackTracker.report();
+                            recordAcks(ackTracker);
+                            metrics.timeouts.increment(1);
+                            ObservoEvents.commitAckTimeout(metrics.observable, notificationId, observoConf.getNotificationTimeoutMs(),
+                                    ackReport.getAckTimesMs().size(), ackReport.getStragglers().size());
+                            String timeoutMsg = "could not notify the observers (" + ackPolicy + ") within " + observoConf.getNotificationTimeoutMs() + " ms";
+                            LOGGER.error("{}; still waiting for {}", timeoutMsg, ackReport.getStragglers());
+                            releaseLockIf(lockHeld);
+                            asyncTask.setAckReport(ackReport);
+                            asyncTask.completeExceptionally(new NotificationTimeoutException(timeoutMsg, ackReport));
+                        }
+                    }, observoConf.getNotificationTimeoutMs(), TimeUnit.MILLISECONDS);
+                    pendingTimeout.set(timeout);
+
+                    ackTracker.whenComplete(() -> {
+                        if (finished.compareAndSet(false, true)) {
+                            timeout.cancel(false);
+                            LOGGER.info("observers were successfully notified");
+                            releaseLockIf(lockHeld);
+                            asyncTask.setAckReport(ackTracker.report());
+                            recordAcks(ackTracker);
+                            metrics.notifications.increment(1);
+                            // completion tasks must not run on the zookeeper event thread
+                            scheduler.execute(asyncTask::completeSuccessfully);
+                        }
+                    });
+
+                    // the watches of all the observers are set in a single pipeline
+                    return watchAcks(ackTracker, observers).thenApply(ignored -> ackTracker);
+                })
+
+                // update data, encoding it off the zookeeper event thread; the version written identifies this notification
+                .thenComposeAsync(ackTracker -> {
+                    checkNotFinished(finished, notificationId);
+                    return publish(payloadWriting, notificationId, issued, ackTracker).thenAccept(version -> {
+                        commitJournaled(journaled);
+                        ackTracker.setVersion(version);
+                    });
+                }, publishExecutor)
+
+                .whenComplete((ignored, e) -> {
+                    issued.complete(null);
+                    if (e != null && !isConnectionFailure(Futures.unwrap(e))) {
+                        // publishing it again would fail the same way
+                        commitJournaled(journaled);
+                    }
+                    if (e != null && finished.compareAndSet(false, true)) {
+                        Throwable cause = Futures.unwrap(e);
+                        LOGGER.error("exception while notifying observers: {}", cause);
+                        metrics.errors.increment(1);
+                        ScheduledFuture<?> timeout = pendingTimeout.get();
+                        if (timeout != null) {
+                            timeout.cancel(false);
+                        }
+                        releaseLockIf(lockHeld);
+                        asyncTask.completeExceptionally(cause);
+                    }
+                });
 
-                } catch (InterruptedException e) {
-                    LOGGER.error("Notification was interrupted", e);
-                    Thread.currentThread().interrupt();
-                    asyncTask.completeExceptionally(e);
+        return asyncTask;
 
-                }
+    }
 
-            };
+    @FunctionalInterface
+    private interface Encoding {
+        List<byte[]> encode() throws Exception;
+    }
 
-            new Thread(runnable).start();
+    @FunctionalInterface
+    private interface PayloadWriting {
+        byte[] write(Envelope envelope) throws Exception;
+    }
 
-            CuratorWatcher observerNotifiedWatcher = event -> {
-                LOGGER.debug("observer data updated: {}", event);
-                remainingToNotify.countDown();
-            };
+    @FunctionalInterface
+    private interface Journaling {
+        CompletableFuture<Long> journal();
+    }
 
-            for (String observer : observers) {
-                client.getData().usingWatcher(observerNotifiedWatcher).forPath(observersPath + "/" + observer);
+    private void commitJournaled(CompletableFuture<Long> journaled) {
+        // a notification that could not be journaled is not in the log
+        if (!journaled.isDone() || journaled.isCompletedExceptionally()) {
+            return;
+        }
+        Long sequence = journaled.join();
+        if (sequence != null) {
+            writeAheadLog.commit(sequence);
+        }
+    }
+
+    /**
+     * @return whether the notification failed for the connection, or was aborted when it was lost
+     */
+    private static boolean isConnectionFailure(Throwable cause) {
+        return cause instanceof CancellationException
+                || cause instanceof KeeperException.ConnectionLossException
+                || cause instanceof KeeperException.SessionExpiredException
+                || cause instanceof KeeperException.OperationTimeoutException;
+    }
+
+    /**
+     * @param notificationId identity of the notification, written into its envelope along with the publish time
+     * @param issued completed once the write has been issued; zookeeper applies the writes of a session in order
+     * @param ackTracker started once the payload has been written, just before being published
+     * @return the version of the observable node, or the log sequence number, identifying the notification
+     */
+    private CompletableFuture<Long> publish(PayloadWriting payloadWriting, UUID notificationId, CompletableFuture<Void> issued, AckTracker ackTracker) {
+        byte[] payload;
+        long encodeStart = System.nanoTime();
+        Object encodeEvent = ObservoEvents.beginEncode();
+        try {
+            payload = payloadWriting.write(new Envelope(notificationId, System.currentTimeMillis(), hostname));
+        } catch (Exception e) {
+            return Futures.failed(e);
+        }
+        metrics.encode.recordSince(encodeStart);
+        ObservoEvents.commitEncode(encodeEvent, metrics.observable, notificationId, payload.length);
+        ackTracker.start();
+        long publishStart = System.nanoTime();
+        Object publishEvent = ObservoEvents.beginPublish();
+        CompletableFuture<Long> published = eventLog != null
+                ? eventLog.append(payload)
+                : Futures.background(callback -> client.setData().inBackground(callback).forPath(path, payload))
+                        .thenApply(event -> (long) event.getStat().getVersion());
+        issued.complete(null);
+        return published.whenComplete((version, e) -> {
+            ObservoEvents.commitPublish(publishEvent, metrics.observable, notificationId, payload.length, e == null);
+            if (e == null) {
+                metrics.publish.recordSince(publishStart);
+                metrics.bytesWritten.increment(payload.length);
             }
+        });
+    }
 
-            // update data
-            client.setData().forPath(path, Serializer.serialize(data));
+    private void recordAcks(AckTracker ackTracker) {
+        ackTracker.ackLatenciesNanos().values().forEach(metrics.ack::record);
+    }
 
-        } catch(Exception e) {
-            LOGGER.error("exception while notifying observers: {}", e);
-            asyncTask.completeExceptionally(e);
+    private CompletableFuture<Void> watchAcks(AckTracker ackTracker, List<String> observers) {
+        if (acksPath != null) {
+            return watchAggregatedAcks(ackTracker);
+        }
+        CompletableFuture<?>[] watches = observers.stream()
+                .map(observer -> watchAck(ackTracker, observer))
+                .toArray(CompletableFuture<?>[]::new);
+        return CompletableFuture.allOf(watches);
+    }
+
+    private CompletableFuture<Void> watchAck(AckTracker ackTracker, String observer) {
+        CuratorWatcher observerNotifiedWatcher = event -> {
+            LOGGER.debug("observer data updated: {}", event);
+            if (!ackTracker.isComplete()) {
+                watchAck(ackTracker, observer).exceptionally(e -> {
+                    LOGGER.error("could not watch the acknowledgement of observer {}: {}", observer, e);
+                    return null;
+                });
+            }
+        };
+
+        return Futures.background(callback -> client.getData().usingWatcher(observerNotifiedWatcher).inBackground(callback).forPath(observersPath + "/" + observer))
+                .handle((event, e) -> {
+                    if (e == null) {
+                        ackTracker.ack(observer, Acknowledgement.fromBytes(event.getData()));
+                    } else if (Futures.unwrap(e) instanceof KeeperException.NoNodeException) {
+                        LOGGER.debug("observer {} has been unregistered", observer);
+                        ackTracker.remove(observer);
+                    } else {
+                        throw new CompletionException(e);
+                    }
+                    return null;
+                });
+    }
+
+    private CompletableFuture<Void> watchAggregatedAcks(AckTracker ackTracker) {
+        CuratorWatcher acksWatcher = event -> {
+            LOGGER.debug("acks updated: {}", event);
+            if (!ackTracker.isComplete()) {
+                watchAggregatedAcks(ackTracker).exceptionally(e -> {
+                    LOGGER.error("could not watch the acknowledgements: {}", e);
+                    return null;
+                });
+            }
+        };
 
+        return Futures.background(callback -> client.getChildren().usingWatcher(acksWatcher).inBackground(callback).forPath(acksPath))
+                .thenCompose(event -> {
+                    Map<String, Long> ackedVersions = new HashMap<>();
+                    for (String ackNode : event.getChildren()) {
+                        ackedVersions.merge(Acknowledgement.observerOf(ackNode), Acknowledgement.versionOf(ackNode), Math::max);
+                    }
+                    if (!ackTracker.expectsOthersThan(ackedVersions.keySet())) {
+                        ackTracker.ackAll(ackedVersions, Collections.emptySet());
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    // the observer node is created before the ack node: an observer without the latter may be registering
+                    return Futures.background(callback -> client.getChildren().inBackground(callback).forPath(observersPath))
+                            .thenAccept(observers -> ackTracker.ackAll(ackedVersions, observers.getChildren()));
+                });
+    }
+
+    private void releaseLockIf(AtomicBoolean lockHeld) {
+        if (lockHeld.getAndSet(false)) {
+            distributedLock.releaseLock();
         }
+    }
 
-        return asyncTask;
+    private static void checkNotFinished(AtomicBoolean finished, UUID notificationId) {
+        if (finished.get()) {
+            throw new CancellationException("notification " + notificationId + " has already been completed");
+        }
+    }
 
+    /**
+     * Fails the notifications in flight as soon as the connection is suspended or lost, as their acknowledgements
+     * can no longer be awaited, although their writes may still be applied; new notifications fail until reconnected.
+     * Once reconnected, the subscription of the observers of this process is restored in the background.
+     */
+    void connectionStateChanged(ConnectionState newState) {
+        LOGGER.debug("connection state of {}: {}", path, newState);
+        switch (newState) {
+            case SUSPENDED:
+            case LOST:
+                connected = false;
+                KeeperException cause = KeeperException.create(newState == ConnectionState.LOST
+                        ? KeeperException.Code.SESSIONEXPIRED : KeeperException.Code.CONNECTIONLOSS, path);
+                // completion tasks must not run on the curator event thread
+                inFlight.keySet().forEach(notificationId -> scheduler.execute(() -> abort(notificationId, cause)));
+                break;
+            case CONNECTED:
+                connected = true;
+                break;
+            case RECONNECTED:
+                synchronized (publishOrder) {
+                    connected = true;
+                    // the journaled notifications are chained before any new one
+                    if (writeAheadLog != null) {
+                        replayJournal();
+                    }
+                }
+                recoverSubscription();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void abort(UUID notificationId, Throwable cause) {
+        Consumer<Throwable> abort = inFlight.get(notificationId);
+        if (abort != null) {
+            abort.accept(cause);
+        }
+    }
+
+    private void recoverSubscription() {
+        Subscription current;
+        synchronized (subscriptionLock) {
+            current = subscription;
+        }
+        if (current == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        current.recover().whenComplete((ignored, e) -> {
+            if (e == null) {
+                LOGGER.info("observers of {} recovered in {} ms", path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                // retried on the next reconnection
+                LOGGER.error("could not recover the observers of {}: {}", path, e);
+            }
+        });
+    }
+
+    @Override
+    public T getCurrentValue() throws Exception {
+        Notification<T> latest = null;
+        synchronized (subscriptionLock) {
+            // kept current by the watcher while observers are registered in this process
+            if (subscription != null) {
+                latest = localObservers.getLatest();
+            }
+        }
+        if (latest == null) {
+            Payload payload = readCurrentPayload();
+            if (payload == null) {
+                return null;
+            }
+            latest = new Notification<>(payload, codec);
+        }
+        return latest.size() == 0 ? null : latest.getItem(latest.size() - 1);
     }
 
-    private String generateUniqueChildPath() {
-        return observersPath + "/" + hostname + observers.size();
+    /**
+     * @return the payload of the latest notification, from the snapshot if it is still current; null if nothing has been notified
+     */
+    private Payload readCurrentPayload() throws Exception {
+        byte[] data;
+        if (eventLog != null) {
+            List<String> entries = EventLog.entriesAfter(Acknowledgement.NONE, client.getChildren().forPath(eventLog.getLogPath()));
+            if (entries.isEmpty()) {
+                return null;
+            }
+            data = client.getData().forPath(ZKPaths.makePath(eventLog.getLogPath(), entries.get(entries.size() - 1)));
+        } else {
+            Stat stat = client.checkExists().forPath(path);
+            if (stat == null || stat.getVersion() == 0) {
+                return null;
+            }
+            SnapshotStore.Snapshot snapshot = snapshotStore == null ? null : snapshotStore.load();
+            if (snapshot != null && snapshot.getMzxid() == stat.getMzxid()) {
+                return snapshot.getPayload();
+            }
+            while (true) {
+                Stat read = new Stat();
+                data = client.getData().storingStatIn(read).forPath(path);
+                try {
+                    return payloadReader.read(data).get();
+                } catch (ExecutionException e) {
+                    // the chunks or the base of the data read are trimmed once newer data is written: read the newer data
+                    Stat latest = client.checkExists().forPath(path);
+                    if (!(Futures.unwrap(e) instanceof KeeperException.NoNodeException) || latest == null || latest.getMzxid() == read.getMzxid()) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        return payloadReader.read(data).get();
+    }
+
+    @Override
+    public CompressionStats getCompressionStats() {
+        return payloadWriter.getCompressionStats();
+    }
+
+    @Override
+    public int getQueueDepth(Observer<T> observer) {
+        return localObservers.getQueueDepth(observer);
     }
 
 }
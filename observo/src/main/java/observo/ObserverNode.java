@@ -0,0 +1,135 @@
+package observo;
+
+import observo.utils.Futures;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Node representing an observer under the observers path, through which it acknowledges the notifications.
+ * The node is ephemeral sequential: its name is unique, and it goes away with the session of a crashed process,
+ * which then stops being waited for.
+ * When acknowledgements are aggregated, the observer also owns an ephemeral node under the acks path
+ * named after the latest acknowledged version, which is replaced in a single transaction on every acknowledgement.
+ * Both nodes are created again, under a new name, when the session they belonged to has expired.
+ */
+class ObserverNode {
+
+    private final CuratorFramework client;
+    private final String observersPath;
+    private final String namePrefix;
+    private final String acksPath;
+    private volatile String childPath;
+    private volatile String name;
+    private volatile long lastAcked = Acknowledgement.NONE;
+    private volatile long sessionId;
+
+    /**
+     * @param namePrefix prefix of the node name, followed by a sequence number assigned on creation
+     * @param acksPath path of the aggregated acknowledgements, null if observers acknowledge through their own node
+     */
+    ObserverNode(CuratorFramework client, String observersPath, String namePrefix, String acksPath) {
+        this.client = client;
+        this.observersPath = observersPath;
+        this.namePrefix = namePrefix;
+        this.acksPath = acksPath;
+    }
+
+    /**
+     * Creates a new node, named after the prefix followed by a sequence number.
+     */
+    void create() throws Exception {
+        sessionId = currentSessionId();
+        childPath = client.create()
+                .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                .forPath(ZKPaths.makePath(observersPath, namePrefix), Acknowledgement.toBytes(lastAcked));
+        name = ZKPaths.getNodeFromPath(childPath);
+        if (acksPath != null) {
+            try {
+                client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(ackNodePath(lastAcked));
+            } catch (KeeperException.NodeExistsException e) {
+                // already created by this session
+            } catch (Exception e) {
+                // the publishers would wait for an observer that can never acknowledge
+                client.delete().quietly().forPath(childPath);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Creates the nodes again in the background if the session they were created in has expired,
+     * carrying over the latest acknowledged version.
+     * @return completed once the nodes exist in the current session
+     */
+    CompletableFuture<Void> recreateIfExpired() {
+        long currentSessionId;
+        try {
+            currentSessionId = currentSessionId();
+        } catch (Exception e) {
+            return Futures.failed(e);
+        }
+        if (currentSessionId == sessionId) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return Futures.background(callback -> client.create()
+                        .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                        .inBackground(callback)
+                        .forPath(ZKPaths.makePath(observersPath, namePrefix), Acknowledgement.toBytes(lastAcked)))
+                .thenCompose(event -> {
+                    childPath = event.getName();
+                    name = ZKPaths.getNodeFromPath(childPath);
+                    sessionId = currentSessionId;
+                    if (acksPath == null) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return Futures.background(callback -> client.create()
+                                    .withMode(CreateMode.EPHEMERAL)
+                                    .inBackground(callback)
+                                    .forPath(ackNodePath(lastAcked)))
+                            .thenApply(ignored -> null);
+                });
+    }
+
+    void acknowledge(long version) throws Exception {
+        if (acksPath == null) {
+            client.setData().forPath(childPath, Acknowledgement.toBytes(version));
+            lastAcked = version;
+            return;
+        }
+        if (version == lastAcked) {
+            return;
+        }
+        try {
+            client.transaction().forOperations(
+                    client.transactionOp().delete().forPath(ackNodePath(lastAcked)),
+                    client.transactionOp().create().withMode(CreateMode.EPHEMERAL).forPath(ackNodePath(version)));
+        } catch (KeeperException.NoNodeException e) {
+            // the previous ack node has gone with an expired session
+            client.create().withMode(CreateMode.EPHEMERAL).forPath(ackNodePath(version));
+        }
+        lastAcked = version;
+    }
+
+    void delete() throws Exception {
+        client.delete().forPath(childPath);
+        if (acksPath != null) {
+            try {
+                client.delete().forPath(ackNodePath(lastAcked));
+            } catch (KeeperException.NoNodeException e) {
+                // gone with an expired session
+            }
+        }
+    }
+
+    private long currentSessionId() throws Exception {
+        return client.getZookeeperClient().getZooKeeper().getSessionId();
+    }
+
+    private String ackNodePath(long version) {
+        return ZKPaths.makePath(acksPath, Acknowledgement.toAckNode(name, version));
+    }
+}
@@ -0,0 +1,38 @@
+package observo;
+
+import java.io.IOException;
+
+/**
+ * Hands a notification to an observer: batches are passed whole to batch observers,
+ * and element by element, in order, to any other observer; raw and lazy observers get the items undecoded,
+ * and metadata observers get them along with the envelope of the notification.
+ */
+class ObserverUpdater {
+
+    private ObserverUpdater() {
+    }
+
+    static <T> void update(Observer<T> observer, Notification<T> notification) throws IOException {
+        if (observer instanceof RawObserver) {
+            for (int i = 0; i < notification.size(); i++) {
+                ((RawObserver<T>) observer).updateRaw(notification.getItemBuffer(i));
+            }
+        } else if (observer instanceof LazyObserver) {
+            for (int i = 0; i < notification.size(); i++) {
+                ((LazyObserver<T>) observer).updateLazy(new LazyData<>(notification, i));
+            }
+        } else if (observer instanceof MetadataObserver) {
+            for (int i = 0; i < notification.size(); i++) {
+                ((MetadataObserver<T>) observer).update(notification.getItem(i), notification.getEnvelope());
+            }
+        } else if (!notification.isBatch()) {
+            observer.update(notification.getItem(0));
+        } else if (observer instanceof BatchObserver) {
+            ((BatchObserver<T>) observer).updateBatch(notification.getItems());
+        } else {
+            for (int i = 0; i < notification.size(); i++) {
+                observer.update(notification.getItem(i));
+            }
+        }
+    }
+}
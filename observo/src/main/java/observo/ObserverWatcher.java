@@ -1,76 +1,215 @@
 package observo;
 
-import observo.utils.Serializer;
+import observo.conf.WatchMode;
+import observo.payload.Payload;
+import observo.payload.PayloadReader;
+import observo.payload.SnapshotStore;
+import observo.utils.Futures;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.zookeeper.AddWatchMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Serializable;
-
-public class ObserverWatcher<T extends Serializable> implements CuratorWatcher {
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single watcher on the data of the observable for all the observers registered in this process.
+ * Every change costs a single read: a one-shot watch is set again by the read itself, so no change
+ * can slip in between, while a persistent watch does not need to be set again.
+ * With a snapshot store, the observers are handed the current data on subscription: from the snapshot
+ * if it is still current, from a single read otherwise; every data read is saved as the new snapshot.
+ * Data is delivered only if written after the data already delivered, as told by the zxid of its write,
+ * so that the reads of a change reported by several watches, or by a recovery, are delivered once.
+ * Data whose chunks or base have been trimmed by newer data is replaced by the latest data.
+ */
+public class ObserverWatcher<T> implements CuratorWatcher, Subscription {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ObserverWatcher.class);
 
 
     private final CuratorFramework client;
     private final String path;
-    private final String childPath;
-    private final Observer<T> observer;
-    private final Class<T> dataType;
+    private final LocalObservers<T> localObservers;
+    private final PayloadReader payloadReader;
+    private final WatchMode watchMode;
+    private final SnapshotStore snapshotStore;
+    private final AtomicLong lastMzxid = new AtomicLong();
     private volatile boolean enabled = true;
 
-    public ObserverWatcher(CuratorFramework client, String path, String childPath, Observer<T> observer, Class<T> dataType) throws Exception {
+    /**
+     * @param snapshotStore store of the latest data, null to only deliver the changes following the subscription
+     */
+    public ObserverWatcher(CuratorFramework client, String path, LocalObservers<T> localObservers, PayloadReader payloadReader, WatchMode watchMode, SnapshotStore snapshotStore) throws Exception {
         this.client = client;
         this.path = path;
-        this.childPath = childPath;
-        this.observer = observer;
-        this.dataType = dataType;
-        createNodePath();
-        setWatcherOnData();
+        this.localObservers = localObservers;
+        this.payloadReader = payloadReader;
+        this.watchMode = watchMode;
+        this.snapshotStore = snapshotStore;
+        localObservers.getObserverNode().create();
+        Stat stat;
+        if (watchMode == WatchMode.PERSISTENT) {
+            client.watchers().add().withMode(AddWatchMode.PERSISTENT).usingWatcher(this).forPath(path);
+            stat = client.checkExists().forPath(path);
+        } else {
+            // the watch is set without reading the data, which is fetched only when needed
+            stat = client.checkExists().usingWatcher(this).forPath(path);
+        }
+        // version 0 has never been notified
+        if (snapshotStore != null && stat != null && stat.getVersion() > 0) {
+            seed(stat);
+        } else if (stat != null) {
+            // only the changes following the subscription are delivered
+            lastMzxid.set(stat.getMzxid());
+        }
+    }
+
+    private void seed(Stat stat) {
+        SnapshotStore.Snapshot snapshot = snapshotStore.load();
+        if (snapshot != null && snapshot.getMzxid() == stat.getMzxid()) {
+            LOGGER.debug("observers seeded with the snapshot of version {}", snapshot.getVersion());
+            lastMzxid.set(snapshot.getMzxid());
+            localObservers.submit(snapshot.getPayload(), snapshot.getVersion());
+        } else {
+            deliver(readData(), System.nanoTime());
+        }
     }
 
-    private void setWatcherOnData() throws Exception {
-        client.getData().usingWatcher(this).forPath(path);
+    private CompletableFuture<CuratorEvent> readData() {
+        if (watchMode == WatchMode.PERSISTENT) {
+            return Futures.background(callback -> client.getData().inBackground(callback).forPath(path));
+        }
+        return Futures.background(callback -> client.getData().usingWatcher(this).inBackground(callback).forPath(path));
     }
 
+    @Override
     public void disable() throws Exception {
-        deleteNodePath();
+        localObservers.getObserverNode().delete();
         enabled = false;
+        if (watchMode == WatchMode.PERSISTENT) {
+            client.watchers().remove(this).ofType(Watcher.WatcherType.Any).quietly().forPath(path);
+        }
+    }
+
+    /**
+     * Sets the watch again and reads the data if it has changed since the last delivery, all in the background;
+     * a persistent watch is added again in case the session has expired.
+     */
+    @Override
+    public CompletableFuture<Void> recover() {
+        long start = System.nanoTime();
+        CompletableFuture<Void> nodeRecreated = localObservers.getObserverNode().recreateIfExpired();
+        CompletableFuture<Void> watchAdded = watchMode == WatchMode.PERSISTENT
+                ? Futures.background(callback -> client.watchers().add().withMode(AddWatchMode.PERSISTENT).inBackground(callback).usingWatcher(this).forPath(path))
+                        .thenApply(ignored -> null)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> caughtUp = checkExists()
+                .handle((event, e) -> {
+                    if (e != null && !(Futures.unwrap(e) instanceof KeeperException.NoNodeException)) {
+                        throw new CompletionException(e);
+                    }
+                    Stat stat = e == null ? event.getStat() : null;
+                    if (stat != null && stat.getMzxid() > lastMzxid.get()) {
+                        LOGGER.debug("version {} was notified while disconnected", stat.getVersion());
+                        deliver(readData(), start);
+                    }
+                    return null;
+                });
+        return CompletableFuture.allOf(nodeRecreated, watchAdded, caughtUp);
+    }
+
+    private CompletableFuture<CuratorEvent> checkExists() {
+        if (watchMode == WatchMode.PERSISTENT) {
+            return Futures.background(callback -> client.checkExists().inBackground(callback).forPath(path));
+        }
+        return Futures.background(callback -> client.checkExists().usingWatcher(this).inBackground(callback).forPath(path));
     }
 
     @Override
     public void process(WatchedEvent event) throws Exception {
 
-        // 1. collect data
+        // 1. collect data in the background, setting the one-shot watch again
         LOGGER.debug("data change detected");
 
-        if (enabled) {
-            byte[] data = client.getData().forPath(path);
-
-            // 2. call observer with data
-            observer.update(Serializer.deserialize(data, dataType));
+        if (event.getType() == Watcher.Event.EventType.None) {
+            // the changes of the connection are handled by the recovery
+            return;
+        }
 
-            // 3. set watcher on data
-            client.getData().usingWatcher(this).forPath(path);
+        if (watchMode == WatchMode.PERSISTENT && event.getType() != Watcher.Event.EventType.NodeDataChanged) {
+            // the persistent watch also reports the changes of the children and of the connection
+            return;
+        }
 
-            // 4. modify child observer data
-            client.setData().forPath(childPath);
+        if (enabled) {
+            deliver(readData(), System.nanoTime());
 
         } else {
             LOGGER.debug("watcher is disabled; no action will be performed");
         }
     }
 
-    private void createNodePath() throws Exception {
-        if (client.checkExists().forPath(childPath) == null) {
-            client.create().forPath(childPath);
-        }
+    private void deliver(CompletableFuture<CuratorEvent> reading, long start) {
+        PipelineMetrics metrics = localObservers.getMetrics();
+        // chunked payloads complete asynchronously once all the chunks have been fetched
+        reading.thenCompose(read -> payloadReader.read(read.getData())
+                        .handle((payload, e) -> {
+                            if (e == null) {
+                                metrics.read.recordSince(start);
+                                metrics.bytesRead.increment(read.getData().length);
+                                onData(payload, read.getStat());
+                            } else if (Futures.unwrap(e) instanceof KeeperException.NoNodeException) {
+                                rereadIfChanged(read.getStat(), start);
+                            } else {
+                                throw new CompletionException(Futures.unwrap(e));
+                            }
+                            return null;
+                        }))
+                .exceptionally(e -> {
+                    LOGGER.error("could not read the notified data: {}", e);
+                    return null;
+                });
+    }
+
+    /**
+     * The chunks or the base of data read late are trimmed once newer data has been written:
+     * the newer data is read instead, as only the latest one is delivered anyway.
+     */
+    private void rereadIfChanged(Stat trimmed, long start) {
+        LOGGER.debug("version {} has been trimmed, reading the latest version", trimmed.getVersion());
+        Futures.background(callback -> client.getData().inBackground(callback).forPath(path))
+                .thenAccept(read -> {
+                    if (read.getStat().getMzxid() > trimmed.getMzxid()) {
+                        deliver(CompletableFuture.completedFuture(read), start);
+                    } else {
+                        LOGGER.error("version {} refers to data that no longer exists", trimmed.getVersion());
+                    }
+                })
+                .exceptionally(e -> {
+                    LOGGER.error("could not read the latest data: {}", e);
+                    return null;
+                });
     }
 
-    private void deleteNodePath() throws Exception {
-        client.delete().forPath(childPath);
+    private void onData(Payload payload, Stat stat) {
+        long delivered = lastMzxid.getAndAccumulate(stat.getMzxid(), Math::max);
+        if (stat.getMzxid() <= delivered) {
+            LOGGER.debug("version {} has already been delivered", stat.getVersion());
+            return;
+        }
+        if (snapshotStore != null) {
+            snapshotStore.save(stat.getVersion(), stat.getMzxid(), payload);
+        }
+        // 2. fan the data out to the local observers; the version is acknowledged once they have all been updated
+        localObservers.submit(payload, stat.getVersion());
     }
 
 }
@@ -0,0 +1,49 @@
+package observo;
+
+import observo.metrics.Counter;
+import observo.metrics.LatencyRecorder;
+import observo.metrics.Metrics;
+import observo.metrics.MetricsRegistry;
+
+/**
+ * The recorders of the notification pipeline of an observable, requested once from the registry.
+ * The name of the observable also labels its flight recorder events.
+ */
+class PipelineMetrics {
+
+    static final PipelineMetrics NONE = new PipelineMetrics(MetricsRegistry.NONE, "");
+
+    final String observable;
+    final LatencyRecorder lockWait;
+    final LatencyRecorder encode;
+    final LatencyRecorder publish;
+    final LatencyRecorder ack;
+    final LatencyRecorder read;
+    final LatencyRecorder decode;
+    final LatencyRecorder update;
+    final LatencyRecorder propagation;
+    final Counter notifications;
+    final Counter timeouts;
+    final Counter errors;
+    final Counter bytesWritten;
+    final Counter bytesRead;
+    final Counter dropped;
+
+    PipelineMetrics(MetricsRegistry registry, String observable) {
+        this.observable = observable;
+        this.lockWait = registry.latency(observable, Metrics.LOCK_WAIT);
+        this.encode = registry.latency(observable, Metrics.ENCODE);
+        this.publish = registry.latency(observable, Metrics.PUBLISH);
+        this.ack = registry.latency(observable, Metrics.ACK);
+        this.read = registry.latency(observable, Metrics.READ);
+        this.decode = registry.latency(observable, Metrics.DECODE);
+        this.update = registry.latency(observable, Metrics.UPDATE);
+        this.propagation = registry.latency(observable, Metrics.PROPAGATION);
+        this.notifications = registry.counter(observable, Metrics.NOTIFICATIONS);
+        this.timeouts = registry.counter(observable, Metrics.TIMEOUTS);
+        this.errors = registry.counter(observable, Metrics.ERRORS);
+        this.bytesWritten = registry.counter(observable, Metrics.BYTES_WRITTEN);
+        this.bytesRead = registry.counter(observable, Metrics.BYTES_READ);
+        this.dropped = registry.counter(observable, Metrics.DROPPED);
+    }
+}
@@ -0,0 +1,19 @@
+package observo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Observer receiving the encoded data, as a read-only view, without it being decoded;
+ * the items of a batch are received one by one.
+ */
+@FunctionalInterface
+public interface RawObserver<T> extends Observer<T> {
+
+    void updateRaw(ByteBuffer data);
+
+    @Override
+    default void update(T data) {
+        throw new UnsupportedOperationException("raw observers only receive the encoded data");
+    }
+
+}
@@ -0,0 +1,120 @@
+package observo;
+
+import observo.codec.Codec;
+import observo.codec.JavaSerializationCodec;
+import observo.conf.ObservoConf;
+import observo.conf.ZookeeperConf;
+import observo.utils.ConsistentHashRing;
+import observo.utils.HostnameProvider;
+import observo.utils.HostnameProviderImpl;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads the observables across several zookeeper ensembles, so that their publish and watch load scales
+ * with the number of ensembles. Each observable lives entirely on the ensemble its name is mapped to by consistent
+ * hashing on the connect strings: every process configured with the same ensembles maps it to the same one,
+ * and adding an ensemble only moves to it the observables it takes over, about a fraction 1 / ensembles of them.
+ * An ensemble is identified by its connect string with the servers sorted, so that the processes listing its
+ * servers in different orders still agree on the observables it holds.
+ * The observables are the same as those of an {@link ObservableFactory}, with one connection per ensemble.
+ */
+public class ShardedObservableFactory implements Closeable {
+
+    private static final int POINTS_PER_SHARD = 128;
+
+    private final ConsistentHashRing<Shard> ring;
+
+    public ShardedObservableFactory(List<ZookeeperConf> zookeeperConfs, ObservoConf observoConf, String nameSpaceSuffix) {
+        this(zookeeperConfs, observoConf, nameSpaceSuffix, new HostnameProviderImpl());
+    }
+
+    public ShardedObservableFactory(List<ZookeeperConf> zookeeperConfs, ObservoConf observoConf, String nameSpaceSuffix, HostnameProvider hostnameProvider) {
+        this(zookeeperConfs, zookeeperConf -> new ObservableFactory(zookeeperConf, observoConf, nameSpaceSuffix, hostnameProvider));
+    }
+
+    /**
+     * @param factories creates the factory of each ensemble, starting its client
+     */
+    ShardedObservableFactory(List<ZookeeperConf> zookeeperConfs, Function<ZookeeperConf, ObservableFactory> factories) {
+        Map<String, Shard> shards = new LinkedHashMap<>();
+        for (ZookeeperConf zookeeperConf : zookeeperConfs) {
+            String ensemble = ensembleOf(zookeeperConf.getConnectString());
+            if (shards.containsKey(ensemble)) {
+                throw new IllegalArgumentException("ensemble " + ensemble + " is configured twice");
+            }
+            shards.put(ensemble, null);
+        }
+        try {
+            for (ZookeeperConf zookeeperConf : zookeeperConfs) {
+                shards.put(ensembleOf(zookeeperConf.getConnectString()), new Shard(zookeeperConf, factories.apply(zookeeperConf)));
+            }
+        } catch (RuntimeException e) {
+            // the clients already started are out of reach of close()
+            shards.values().stream()
+                    .filter(Objects::nonNull)
+                    .forEach(shard -> shard.factory.close());
+            throw e;
+        }
+        this.ring = new ConsistentHashRing<>(shards, POINTS_PER_SHARD);
+    }
+
+    public <T extends Serializable> Observable<T> createObservable(String name, Class<T> dataType) {
+        return createObservable(name, new JavaSerializationCodec<>(dataType));
+    }
+
+    public <T> Observable<T> createObservable(String name, Codec<T> codec) {
+        return ring.nodeFor(name).factory.createObservable(name, codec);
+    }
+
+    /**
+     * @return the configuration of the ensemble the observable of the given name lives on
+     */
+    public ZookeeperConf getZookeeperConf(String name) {
+        return ring.nodeFor(name).zookeeperConf;
+    }
+
+    /**
+     * Closes the connections to all the ensembles; the observables created by the factory stop working.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : ring.getNodes().values()) {
+            shard.factory.close();
+        }
+    }
+
+    /**
+     * @return the connect string with its servers sorted, keeping the chroot if any
+     */
+    static String ensembleOf(String connectString) {
+        int chroot = connectString.indexOf('/');
+        String servers = chroot < 0 ? connectString : connectString.substring(0, chroot);
+        return Arrays.stream(servers.split(","))
+                .map(server -> server.trim().toLowerCase(Locale.ROOT))
+                .filter(server -> !server.isEmpty())
+                .sorted()
+                .collect(Collectors.joining(","))
+                + (chroot < 0 ? "" : connectString.substring(chroot));
+    }
+
+    private static class Shard {
+
+        private final ZookeeperConf zookeeperConf;
+        private final ObservableFactory factory;
+
+        private Shard(ZookeeperConf zookeeperConf, ObservableFactory factory) {
+            this.zookeeperConf = zookeeperConf;
+            this.factory = factory;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package observo;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Link between the observers registered in this process and the observable they are watching.
+ */
+interface Subscription {
+
+    void disable() throws Exception;
+
+    /**
+     * Restores the link once the connection to zookeeper is back, without blocking: the observer node is created again
+     * if the session has expired, the watch is set again, and the observers are handed what they missed meanwhile.
+     * @return completed once the link has been restored
+     */
+    CompletableFuture<Void> recover();
+
+}
@@ -0,0 +1,102 @@
+package observo.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary codec: the data is written field by field through the given writer and read back
+ * through the given reader, without any class descriptor.
+ * The encoding buffers are pooled per thread and reused across notifications; an encoding nested in another one,
+ * as a writer encoding a field with another codec, gets a buffer of its own.
+ */
+public class BinaryCodec<T> implements Codec<T> {
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<PooledBuffer> BUFFERS = ThreadLocal.withInitial(PooledBuffer::new);
+
+    private final Writer<T> writer;
+    private final Reader<T> reader;
+
+    public BinaryCodec(Writer<T> writer, Reader<T> reader) {
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    public static BinaryCodec<String> strings() {
+        return new BinaryCodec<>(
+                (data, out) -> writeBytes(data.getBytes(StandardCharsets.UTF_8), out),
+                in -> new String(readBytes(in), StandardCharsets.UTF_8));
+    }
+
+    public static BinaryCodec<byte[]> bytes() {
+        return new BinaryCodec<>(BinaryCodec::writeBytes, BinaryCodec::readBytes);
+    }
+
+    @Override
+    public byte[] encode(T data) throws IOException {
+        PooledBuffer pooled = BUFFERS.get();
+        PooledBuffer buffer = pooled.inUse ? new PooledBuffer() : pooled;
+        buffer.inUse = true;
+        try {
+            buffer.out.writeBoolean(data != null);
+            if (data != null) {
+                writer.write(data, buffer.out);
+            }
+            return buffer.bytes.toByteArray();
+        } finally {
+            buffer.recycle();
+        }
+    }
+
+    @Override
+    public T decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return in.readBoolean() ? reader.read(in) : null;
+    }
+
+    public static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @FunctionalInterface
+    public interface Writer<T> {
+        void write(T data, DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private static class PooledBuffer {
+
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        private DataOutputStream out = new DataOutputStream(bytes);
+        private boolean inUse = false;
+
+        private void recycle() {
+            inUse = false;
+            // do not hold on to buffers grown by an unusually large payload
+            if (bytes.size() > MAX_POOLED_BUFFER_SIZE) {
+                bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+                out = new DataOutputStream(bytes);
+            } else {
+                bytes.reset();
+            }
+        }
+    }
+}
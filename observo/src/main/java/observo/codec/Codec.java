@@ -0,0 +1,15 @@
+package observo.codec;
+
+import java.io.IOException;
+
+/**
+ * Converts the notified data to and from the bytes stored into zookeeper.
+ * Implementations must be thread safe.
+ */
+public interface Codec<T> {
+
+    byte[] encode(T data) throws IOException;
+
+    T decode(byte[] bytes) throws IOException;
+
+}
@@ -0,0 +1,32 @@
+package observo.codec;
+
+import observo.utils.Serializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Default codec based on java serialization.
+ */
+public class JavaSerializationCodec<T extends Serializable> implements Codec<T> {
+
+    private final Class<T> dataType;
+
+    public JavaSerializationCodec(Class<T> dataType) {
+        this.dataType = dataType;
+    }
+
+    @Override
+    public byte[] encode(T data) throws IOException {
+        return Serializer.serialize(data);
+    }
+
+    @Override
+    public T decode(byte[] bytes) throws IOException {
+        try {
+            return Serializer.deserialize(bytes, dataType);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("could not deserialize data of type " + dataType.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package observo.conf;
+
+public enum AckMode {
+
+    /**
+     * Each observer acknowledges through the data of its own node, and the publisher watches every observer node.
+     */
+    PER_OBSERVER,
+
+    /**
+     * Each observer acknowledges by moving its own ephemeral node, named after the acknowledged version,
+     * under a common acks node; the publisher waits on a single children watch.
+     */
+    AGGREGATED
+}
@@ -0,0 +1,69 @@
+package observo.conf;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * How many of the observers registered when a notification starts must acknowledge it for the notification to complete.
+ * The count is taken on the observers still registered, so that observers going away never hold a notification back.
+ */
+public final class AckPolicy {
+
+    private static final AckPolicy ALL = new AckPolicy("all", observers -> observers);
+    private static final AckPolicy FIRST = new AckPolicy("first", observers -> Math.min(1, observers));
+
+    private final String description;
+    private final IntUnaryOperator requiredAcks;
+
+    private AckPolicy(String description, IntUnaryOperator requiredAcks) {
+        this.description = description;
+        this.requiredAcks = requiredAcks;
+    }
+
+    /**
+     * Every observer must acknowledge.
+     */
+    public static AckPolicy all() {
+        return ALL;
+    }
+
+    /**
+     * The first acknowledgement completes the notification.
+     */
+    public static AckPolicy first() {
+        return FIRST;
+    }
+
+    /**
+     * At least the given number of observers must acknowledge, or all of them if they are fewer.
+     */
+    public static AckPolicy atLeast(int observers) {
+        if (observers < 1) {
+            throw new IllegalArgumentException("at least one acknowledgement must be required: " + observers);
+        }
+        return new AckPolicy("atLeast(" + observers + ")", registered -> Math.min(observers, registered));
+    }
+
+    /**
+     * At least the given fraction of the observers, rounded up, must acknowledge.
+     */
+    public static AckPolicy fraction(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("the fraction must be within (0, 1]: " + fraction);
+        }
+        return new AckPolicy("fraction(" + fraction + ")",
+                // the tolerance keeps e.g. 0.3 * 10 from rounding up to 4
+                registered -> (int) Math.ceil(fraction * registered - 1e-9));
+    }
+
+    /**
+     * @return the number of acknowledgements completing a notification to the given number of observers
+     */
+    public int requiredAcks(int observers) {
+        return requiredAcks.applyAsInt(observers);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
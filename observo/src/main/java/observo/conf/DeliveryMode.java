@@ -0,0 +1,14 @@
+package observo.conf;
+
+public enum DeliveryMode {
+
+    /**
+     * Observers receive the latest value of the observable; updates published in a burst may be collapsed.
+     */
+    LATEST_VALUE,
+
+    /**
+     * Every notification is appended to an ordered log and delivered to the observers, in order.
+     */
+    EVENT_LOG
+}
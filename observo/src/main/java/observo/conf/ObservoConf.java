@@ -1,13 +1,79 @@
 package observo.conf;
 
+import observo.metrics.InMemoryMetricsRegistry;
+import observo.metrics.MetricsRegistry;
+import observo.payload.Compression;
+import observo.utils.SharedDispatcher;
+import observo.utils.SharedScheduler;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
 public class ObservoConf {
 
     private final long notificationTimeoutMs;
     private final long lockTimeoutMs;
+    private final Compression compression;
+    private final int compressionThresholdBytes;
+    private final int chunkSizeBytes;
+    private final PublishMode publishMode;
+    private final AckMode ackMode;
+    private final DeliveryMode deliveryMode;
+    private final int eventLogRetainedEntries;
+    private final int eventLogBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final int dispatchQueueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor dispatchExecutor;
+    private final WatchMode watchMode;
+    private final Executor publishExecutor;
+    private final Executor lockExecutor;
+    private final AckPolicy ackPolicy;
+    private final boolean deltaEncoding;
+    private final int deltaThresholdBytes;
+    private final double deltaRebaseRatio;
+    private final Path snapshotDirectory;
+    private final Path writeAheadLogDirectory;
+    private final boolean writeAheadLogCoalescing;
+    private final MetricsRegistry metricsRegistry;
 
     public ObservoConf(long notificationTimeoutMs, long lockTimeoutMs) {
-        this.notificationTimeoutMs = notificationTimeoutMs;
-        this.lockTimeoutMs = lockTimeoutMs;
+        this(builder(notificationTimeoutMs, lockTimeoutMs));
+    }
+
+    private ObservoConf(Builder builder) {
+        this.notificationTimeoutMs = builder.notificationTimeoutMs;
+        this.lockTimeoutMs = builder.lockTimeoutMs;
+        this.compression = builder.compression;
+        this.compressionThresholdBytes = builder.compressionThresholdBytes;
+        this.chunkSizeBytes = builder.chunkSizeBytes;
+        this.publishMode = builder.publishMode;
+        this.ackMode = builder.ackMode;
+        this.deliveryMode = builder.deliveryMode;
+        this.eventLogRetainedEntries = builder.eventLogRetainedEntries;
+        this.eventLogBatchSize = builder.eventLogBatchSize;
+        this.scheduler = builder.scheduler;
+        this.dispatchQueueCapacity = builder.dispatchQueueCapacity;
+        // the latest value only needs the latest notification, whereas the event log delivers them all
+        this.overflowPolicy = builder.overflowPolicy != null ? builder.overflowPolicy
+                : builder.deliveryMode == DeliveryMode.EVENT_LOG ? OverflowPolicy.BLOCK : OverflowPolicy.COALESCE_LATEST;
+        this.dispatchExecutor = builder.dispatchExecutor;
+        this.watchMode = builder.watchMode;
+        this.publishExecutor = builder.publishExecutor;
+        this.lockExecutor = builder.lockExecutor;
+        this.ackPolicy = builder.ackPolicy;
+        this.deltaEncoding = builder.deltaEncoding;
+        this.deltaThresholdBytes = builder.deltaThresholdBytes;
+        this.deltaRebaseRatio = builder.deltaRebaseRatio;
+        this.snapshotDirectory = builder.snapshotDirectory;
+        this.writeAheadLogDirectory = builder.writeAheadLogDirectory;
+        this.writeAheadLogCoalescing = builder.writeAheadLogCoalescing;
+        this.metricsRegistry = builder.metricsRegistry;
+    }
+
+    public static Builder builder(long notificationTimeoutMs, long lockTimeoutMs) {
+        return new Builder(notificationTimeoutMs, lockTimeoutMs);
     }
 
     public long getNotificationTimeoutMs() {
@@ -17,4 +83,278 @@ public class ObservoConf {
     public long getLockTimeoutMs() {
         return lockTimeoutMs;
     }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public int getChunkSizeBytes() {
+        return chunkSizeBytes;
+    }
+
+    public PublishMode getPublishMode() {
+        return publishMode;
+    }
+
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public int getEventLogRetainedEntries() {
+        return eventLogRetainedEntries;
+    }
+
+    public int getEventLogBatchSize() {
+        return eventLogBatchSize;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public int getDispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    public WatchMode getWatchMode() {
+        return watchMode;
+    }
+
+    public Executor getPublishExecutor() {
+        return publishExecutor;
+    }
+
+    public Executor getLockExecutor() {
+        return lockExecutor;
+    }
+
+    public AckPolicy getAckPolicy() {
+        return ackPolicy;
+    }
+
+    public boolean isDeltaEncoding() {
+        return deltaEncoding;
+    }
+
+    public int getDeltaThresholdBytes() {
+        return deltaThresholdBytes;
+    }
+
+    public double getDeltaRebaseRatio() {
+        return deltaRebaseRatio;
+    }
+
+    public Path getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    public Path getWriteAheadLogDirectory() {
+        return writeAheadLogDirectory;
+    }
+
+    public boolean isWriteAheadLogCoalescing() {
+        return writeAheadLogCoalescing;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public static class Builder {
+
+        private final long notificationTimeoutMs;
+        private final long lockTimeoutMs;
+        private Compression compression = Compression.NONE;
+        private int compressionThresholdBytes = 0;
+        private int chunkSizeBytes = 0;
+        private PublishMode publishMode = PublishMode.LOCKED;
+        private AckMode ackMode = AckMode.PER_OBSERVER;
+        private DeliveryMode deliveryMode = DeliveryMode.LATEST_VALUE;
+        private int eventLogRetainedEntries = 1000;
+        private int eventLogBatchSize = 100;
+        private ScheduledExecutorService scheduler = SharedScheduler.get();
+        private int dispatchQueueCapacity = 1000;
+        private OverflowPolicy overflowPolicy = null;
+        private Executor dispatchExecutor = SharedDispatcher.get();
+        private WatchMode watchMode = WatchMode.ONE_SHOT;
+        private Executor publishExecutor = SharedDispatcher.getPublisher();
+        private Executor lockExecutor = SharedDispatcher.getLockWaiter();
+        private AckPolicy ackPolicy = AckPolicy.all();
+        private boolean deltaEncoding = false;
+        private int deltaThresholdBytes = 0;
+        private double deltaRebaseRatio = 0;
+        private Path snapshotDirectory = null;
+        private Path writeAheadLogDirectory = null;
+        private boolean writeAheadLogCoalescing = false;
+        private MetricsRegistry metricsRegistry = InMemoryMetricsRegistry.shared();
+
+        private Builder(long notificationTimeoutMs, long lockTimeoutMs) {
+            this.notificationTimeoutMs = notificationTimeoutMs;
+            this.lockTimeoutMs = lockTimeoutMs;
+        }
+
+        /**
+         * Compresses with the given algorithm the payloads whose encoded size is at least thresholdBytes.
+         */
+        public Builder compression(Compression compression, int thresholdBytes) {
+            this.compression = compression;
+            this.compressionThresholdBytes = thresholdBytes;
+            return this;
+        }
+
+        /**
+         * Splits the payloads larger than chunkSizeBytes across chunk nodes, lifting the zookeeper node size limit.
+         */
+        public Builder chunking(int chunkSizeBytes) {
+            this.chunkSizeBytes = chunkSizeBytes;
+            return this;
+        }
+
+        public Builder publishMode(PublishMode publishMode) {
+            this.publishMode = publishMode;
+            return this;
+        }
+
+        public Builder ackMode(AckMode ackMode) {
+            this.ackMode = ackMode;
+            return this;
+        }
+
+        /**
+         * Delivers every notification in order through an event log retaining the given number of entries;
+         * lagging observers read the entries in batches of batchSize.
+         */
+        public Builder eventLog(int retainedEntries, int batchSize) {
+            this.deliveryMode = DeliveryMode.EVENT_LOG;
+            this.eventLogRetainedEntries = retainedEntries;
+            this.eventLogBatchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Scheduler running the notification timeouts and completion tasks, shared by default by all the observables.
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Queues up to queueCapacity notifications for each observer, applying the overflow policy beyond that.
+         * By default the latest value delivery coalesces to the latest notification, and the event log holds
+         * the notifications back.
+         */
+        public Builder dispatch(int queueCapacity, OverflowPolicy overflowPolicy) {
+            this.dispatchQueueCapacity = queueCapacity;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Executor delivering the notifications to the observers, shared by default by all the observables.
+         */
+        public Builder dispatchExecutor(Executor dispatchExecutor) {
+            this.dispatchExecutor = dispatchExecutor;
+            return this;
+        }
+
+        public Builder watchMode(WatchMode watchMode) {
+            this.watchMode = watchMode;
+            return this;
+        }
+
+        /**
+         * Executor running the blocking steps of the asynchronous notifications: encoding the payload and storing its chunks.
+         * Shared by default by all the observables, apart from the dispatch, so that publishing never holds up
+         * the acknowledgements it is waiting for.
+         */
+        public Builder publishExecutor(Executor publishExecutor) {
+            this.publishExecutor = publishExecutor;
+            return this;
+        }
+
+        /**
+         * Executor acquiring and releasing the lock of the asynchronous notifications, blocking for up to the lock timeout.
+         * It must not be bounded by the publish executor: the publishers waiting for the lock would otherwise take
+         * the threads the lock holders need to publish. The default runs a thread per observable waiting for its lock.
+         */
+        public Builder lockExecutor(Executor lockExecutor) {
+            this.lockExecutor = lockExecutor;
+            return this;
+        }
+
+        /**
+         * Policy completing the notifications that do not specify their own; all the observers must acknowledge by default.
+         */
+        public Builder ackPolicy(AckPolicy ackPolicy) {
+            this.ackPolicy = ackPolicy;
+            return this;
+        }
+
+        /**
+         * Writes the payloads whose encoded size is at least thresholdBytes as a diff against a base stored once,
+         * storing a new base when the diff grows beyond rebaseRatio times the encoded size.
+         * Meant for large data of which only a small part changes between notifications.
+         */
+        public Builder deltaEncoding(int thresholdBytes, double rebaseRatio) {
+            this.deltaEncoding = true;
+            this.deltaThresholdBytes = thresholdBytes;
+            this.deltaRebaseRatio = rebaseRatio;
+            return this;
+        }
+
+        /**
+         * Keeps the latest data received for each observable in a memory-mapped file under the given directory:
+         * observers registered after a restart are handed the data right away, reading it from zookeeper
+         * only if it has changed meanwhile, and observers registered later are handed the latest data received.
+         * Not applied to the event log, which only delivers the entries appended after the registration.
+         */
+        public Builder snapshotDirectory(Path snapshotDirectory) {
+            this.snapshotDirectory = snapshotDirectory;
+            return this;
+        }
+
+        /**
+         * Journals every notification in a file of the given directory before publishing it, so that a notification
+         * that could not be written to zookeeper, because the connection was lost or the process stopped, is not lost:
+         * it is published again, in order, once reconnected or restarted, at least once.
+         * The data is encoded by the caller, to be journaled in publish order; the journal is synced in batches,
+         * off the caller thread, and a notification is published once synced.
+         * @param coalescing whether only the latest of the notifications left to publish again is published
+         */
+        public Builder writeAheadLog(Path directory, boolean coalescing) {
+            this.writeAheadLogDirectory = directory;
+            this.writeAheadLogCoalescing = coalescing;
+            return this;
+        }
+
+        /**
+         * Registry receiving the latencies and counters of the notification pipeline; by default they are kept
+         * in memory, shared by all the observables, and published over JMX.
+         */
+        public Builder metricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+
+        public ObservoConf build() {
+            return new ObservoConf(this);
+        }
+    }
 }
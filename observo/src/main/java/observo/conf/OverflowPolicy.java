@@ -0,0 +1,24 @@
+package observo.conf;
+
+/**
+ * What an observer dispatch lane does with a notification arriving while its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Holds the notification back until the observer makes room; every notification is delivered.
+     * No thread is blocked meanwhile: the event log waits for the room before reading the next entries,
+     * whereas with the latest value delivery the notifications held back are not bounded.
+     */
+    BLOCK,
+
+    /**
+     * Discards the oldest queued notification.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discards all the queued notifications but the latest one.
+     */
+    COALESCE_LATEST
+}
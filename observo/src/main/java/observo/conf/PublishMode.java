@@ -0,0 +1,15 @@
+package observo.conf;
+
+public enum PublishMode {
+
+    /**
+     * Publishers are serialized cluster wide through a distributed lock held until all the observers have acknowledged.
+     */
+    LOCKED,
+
+    /**
+     * Publishers never take the distributed lock; each notification is tracked through the version
+     * of the observable node it has written, and observers acknowledge the latest version they have processed.
+     */
+    OPTIMISTIC
+}
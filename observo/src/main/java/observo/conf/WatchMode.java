@@ -0,0 +1,16 @@
+package observo.conf;
+
+public enum WatchMode {
+
+    /**
+     * The watch is set again by the read triggered by each change; works with zookeeper 3.5 or later servers,
+     * the oldest the curator client supports.
+     */
+    ONE_SHOT,
+
+    /**
+     * A single persistent watch, set at registration, reports every change without being set again;
+     * requires zookeeper 3.6 or later servers.
+     */
+    PERSISTENT
+}
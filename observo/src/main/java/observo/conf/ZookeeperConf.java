@@ -2,16 +2,27 @@ package observo.conf;
 
 public class ZookeeperConf {
 
+    private static final int DEFAULT_SESSION_TIMEOUT_MS = 60000;
+
     private final String connectString;
     private final int connectionTimeoutMs;
     private final int retryTimes;
     private final int retryMsSleep;
+    private final int sessionTimeoutMs;
 
     public ZookeeperConf(String connectString, int connectionTimeoutMs, int retryTimes, int retryMsSleep) {
+        this(connectString, connectionTimeoutMs, retryTimes, retryMsSleep, DEFAULT_SESSION_TIMEOUT_MS);
+    }
+
+    /**
+     * @param sessionTimeoutMs time after which the observers of a crashed process are no longer waited for
+     */
+    public ZookeeperConf(String connectString, int connectionTimeoutMs, int retryTimes, int retryMsSleep, int sessionTimeoutMs) {
         this.connectString = connectString;
         this.connectionTimeoutMs = connectionTimeoutMs;
         this.retryTimes = retryTimes;
         this.retryMsSleep = retryMsSleep;
+        this.sessionTimeoutMs = sessionTimeoutMs;
     }
 
     public String getConnectString() {
@@ -29,4 +40,8 @@ public class ZookeeperConf {
     public int getRetryMsSleep() {
         return retryMsSleep;
     }
+
+    public int getSessionTimeoutMs() {
+        return sessionTimeoutMs;
+    }
 }
@@ -0,0 +1,45 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.UUID;
+
+@Name("observo.AckTimeout")
+@Label("Acknowledgement Timeout")
+@Category({"Observo", "Publish"})
+@Description("Notification whose required acknowledgements did not arrive in time")
+@StackTrace(false)
+public class AckTimeoutEvent extends ObservoEvent {
+
+    @Label("Observable")
+    public String observable;
+
+    @Label("Notification Id")
+    public String notificationId;
+
+    @Label("Timeout")
+    @Timespan(Timespan.MILLISECONDS)
+    public long timeoutMs;
+
+    @Label("Acknowledged")
+    public int acknowledged;
+
+    @Label("Stragglers")
+    public int stragglers;
+
+    public void commit(String observable, UUID notificationId, long timeoutMs, int acknowledged, int stragglers) {
+        if (shouldCommit()) {
+            this.observable = observable;
+            this.notificationId = notificationId == null ? null : notificationId.toString();
+            this.timeoutMs = timeoutMs;
+            this.acknowledged = acknowledged;
+            this.stragglers = stragglers;
+            commit();
+        }
+    }
+}
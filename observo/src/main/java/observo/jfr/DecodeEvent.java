@@ -0,0 +1,32 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("observo.Decode")
+@Label("Decode")
+@Category({"Observo", "Observe"})
+@Description("Decoding of a notified item, shared by the observers of the process")
+@StackTrace(false)
+public class DecodeEvent extends ObservoEvent {
+
+    @Label("Observable")
+    public String observable;
+
+    @Label("Item Size")
+    @DataAmount
+    public long itemBytes;
+
+    public void commit(String observable, long itemBytes) {
+        end();
+        if (shouldCommit()) {
+            this.observable = observable;
+            this.itemBytes = itemBytes;
+            commit();
+        }
+    }
+}
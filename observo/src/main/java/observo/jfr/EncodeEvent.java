@@ -0,0 +1,38 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+@Name("observo.Encode")
+@Label("Encode")
+@Category({"Observo", "Publish"})
+@Description("Encoding of the notified data into the payload, storing its chunks or base if any")
+@StackTrace(false)
+public class EncodeEvent extends ObservoEvent {
+
+    @Label("Observable")
+    public String observable;
+
+    @Label("Notification Id")
+    public String notificationId;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+
+    public void commit(String observable, UUID notificationId, long payloadBytes) {
+        end();
+        if (shouldCommit()) {
+            this.observable = observable;
+            this.notificationId = notificationId == null ? null : notificationId.toString();
+            this.payloadBytes = payloadBytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package observo.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+import java.util.UUID;
+
+/**
+ * The actual emission of the events, only loaded by {@link ObservoEvents} when the flight recorder API is available.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static void register() {
+        FlightRecorder.register(LockAcquireEvent.class);
+        FlightRecorder.register(LockReleaseEvent.class);
+        FlightRecorder.register(EncodeEvent.class);
+        FlightRecorder.register(PublishEvent.class);
+        FlightRecorder.register(AckTimeoutEvent.class);
+        FlightRecorder.register(DecodeEvent.class);
+        FlightRecorder.register(ObserverUpdateEvent.class);
+    }
+
+    static Object beginLockAcquire() {
+        return begin(new LockAcquireEvent());
+    }
+
+    static void commitLockAcquire(Object event, String path, boolean acquired) {
+        ((LockAcquireEvent) event).commit(path, acquired);
+    }
+
+    static Object beginLockRelease() {
+        return begin(new LockReleaseEvent());
+    }
+
+    static void commitLockRelease(Object event, String path) {
+        ((LockReleaseEvent) event).commit(path);
+    }
+
+    static Object beginEncode() {
+        return begin(new EncodeEvent());
+    }
+
+    static void commitEncode(Object event, String observable, UUID notificationId, long payloadBytes) {
+        ((EncodeEvent) event).commit(observable, notificationId, payloadBytes);
+    }
+
+    static Object beginPublish() {
+        return begin(new PublishEvent());
+    }
+
+    static void commitPublish(Object event, String observable, UUID notificationId, long payloadBytes, boolean succeeded) {
+        ((PublishEvent) event).commit(observable, notificationId, payloadBytes, succeeded);
+    }
+
+    static void commitAckTimeout(String observable, UUID notificationId, long timeoutMs, int acknowledged, int stragglers) {
+        new AckTimeoutEvent().commit(observable, notificationId, timeoutMs, acknowledged, stragglers);
+    }
+
+    static Object beginDecode() {
+        return begin(new DecodeEvent());
+    }
+
+    static void commitDecode(Object event, String observable, long itemBytes) {
+        ((DecodeEvent) event).commit(observable, itemBytes);
+    }
+
+    static Object beginObserverUpdate() {
+        return begin(new ObserverUpdateEvent());
+    }
+
+    static void commitObserverUpdate(Object event, String observable, Object observer, UUID notificationId, int items) {
+        ((ObserverUpdateEvent) event).commit(observable, observer, notificationId, items);
+    }
+
+    private static ObservoEvent begin(ObservoEvent event) {
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,30 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("observo.LockAcquire")
+@Label("Lock Acquire")
+@Category({"Observo", "Lock"})
+@Description("Wait for the distributed lock of an observable")
+@StackTrace(false)
+public class LockAcquireEvent extends ObservoEvent {
+
+    @Label("Lock Path")
+    public String path;
+
+    @Label("Acquired")
+    public boolean acquired;
+
+    public void commit(String path, boolean acquired) {
+        end();
+        if (shouldCommit()) {
+            this.path = path;
+            this.acquired = acquired;
+            commit();
+        }
+    }
+}
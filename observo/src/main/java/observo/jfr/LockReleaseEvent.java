@@ -0,0 +1,26 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("observo.LockRelease")
+@Label("Lock Release")
+@Category({"Observo", "Lock"})
+@Description("Release of the distributed lock of an observable")
+@StackTrace(false)
+public class LockReleaseEvent extends ObservoEvent {
+
+    @Label("Lock Path")
+    public String path;
+
+    public void commit(String path) {
+        end();
+        if (shouldCommit()) {
+            this.path = path;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+@Name("observo.ObserverUpdate")
+@Label("Observer Update")
+@Category({"Observo", "Observe"})
+@Description("Update of an observer with a notification")
+@StackTrace(false)
+public class ObserverUpdateEvent extends ObservoEvent {
+
+    @Label("Observable")
+    public String observable;
+
+    @Label("Observer")
+    public String observer;
+
+    @Label("Notification Id")
+    public String notificationId;
+
+    @Label("Items")
+    public int items;
+
+    public void commit(String observable, Object observer, UUID notificationId, int items) {
+        end();
+        if (shouldCommit()) {
+            this.observable = observable;
+            this.observer = String.valueOf(observer);
+            this.notificationId = notificationId == null ? null : notificationId.toString();
+            this.items = items;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package observo.jfr;
+
+import jdk.jfr.Event;
+
+/**
+ * Base of the flight recorder events of the notification lifecycle, all named {@code observo.*}.
+ * They are created and begun on every step, but their fields are only filled in, and the event only committed,
+ * when a recording has enabled them; the overhead is otherwise a short-lived allocation, usually scalar replaced.
+ */
+public abstract class ObservoEvent extends Event {
+}
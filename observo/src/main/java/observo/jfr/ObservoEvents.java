@@ -0,0 +1,103 @@
+package observo.jfr;
+
+import java.util.UUID;
+
+/**
+ * Emits the flight recorder events of observo, when the runtime provides the flight recorder API: elsewhere, as on
+ * java 11 runtime images linked without the jdk.jfr module, the events are never loaded and every method does nothing.
+ * The events begun are handed out as plain objects, null when not emitted, so that neither the callers nor this
+ * class link the event classes themselves.
+ */
+public final class ObservoEvents {
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private ObservoEvents() {
+    }
+
+    /**
+     * Registers the events, so that recordings list them before they first occur.
+     * Registering also moves the one-off cost of initializing the event support, hundreds of milliseconds
+     * on some virtual machines, from the first notification to the creation of the observable.
+     */
+    public static void register() {
+        if (AVAILABLE) {
+            FlightRecorderEvents.register();
+        }
+    }
+
+    public static Object beginLockAcquire() {
+        return AVAILABLE ? FlightRecorderEvents.beginLockAcquire() : null;
+    }
+
+    public static void commitLockAcquire(Object event, String path, boolean acquired) {
+        if (event != null) {
+            FlightRecorderEvents.commitLockAcquire(event, path, acquired);
+        }
+    }
+
+    public static Object beginLockRelease() {
+        return AVAILABLE ? FlightRecorderEvents.beginLockRelease() : null;
+    }
+
+    public static void commitLockRelease(Object event, String path) {
+        if (event != null) {
+            FlightRecorderEvents.commitLockRelease(event, path);
+        }
+    }
+
+    public static Object beginEncode() {
+        return AVAILABLE ? FlightRecorderEvents.beginEncode() : null;
+    }
+
+    public static void commitEncode(Object event, String observable, UUID notificationId, long payloadBytes) {
+        if (event != null) {
+            FlightRecorderEvents.commitEncode(event, observable, notificationId, payloadBytes);
+        }
+    }
+
+    public static Object beginPublish() {
+        return AVAILABLE ? FlightRecorderEvents.beginPublish() : null;
+    }
+
+    public static void commitPublish(Object event, String observable, UUID notificationId, long payloadBytes, boolean succeeded) {
+        if (event != null) {
+            FlightRecorderEvents.commitPublish(event, observable, notificationId, payloadBytes, succeeded);
+        }
+    }
+
+    public static void commitAckTimeout(String observable, UUID notificationId, long timeoutMs, int acknowledged, int stragglers) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.commitAckTimeout(observable, notificationId, timeoutMs, acknowledged, stragglers);
+        }
+    }
+
+    public static Object beginDecode() {
+        return AVAILABLE ? FlightRecorderEvents.beginDecode() : null;
+    }
+
+    public static void commitDecode(Object event, String observable, long itemBytes) {
+        if (event != null) {
+            FlightRecorderEvents.commitDecode(event, observable, itemBytes);
+        }
+    }
+
+    public static Object beginObserverUpdate() {
+        return AVAILABLE ? FlightRecorderEvents.beginObserverUpdate() : null;
+    }
+
+    public static void commitObserverUpdate(Object event, String observable, Object observer, UUID notificationId, int items) {
+        if (event != null) {
+            FlightRecorderEvents.commitObserverUpdate(event, observable, observer, notificationId, items);
+        }
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, ObservoEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package observo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+@Name("observo.Publish")
+@Label("Publish")
+@Category({"Observo", "Publish"})
+@Description("Write of a notification, from its issue to its confirmation by zookeeper; committed by the thread receiving the confirmation")
+@StackTrace(false)
+public class PublishEvent extends ObservoEvent {
+
+    @Label("Observable")
+    public String observable;
+
+    @Label("Notification Id")
+    public String notificationId;
+
+    @Label("Payload Size")
+    @DataAmount
+    public long payloadBytes;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    public void commit(String observable, UUID notificationId, long payloadBytes, boolean succeeded) {
+        end();
+        if (shouldCommit()) {
+            this.observable = observable;
+            this.notificationId = notificationId == null ? null : notificationId.toString();
+            this.payloadBytes = payloadBytes;
+            this.succeeded = succeeded;
+            commit();
+        }
+    }
+}
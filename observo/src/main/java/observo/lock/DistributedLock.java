@@ -1,29 +1,44 @@
 package observo.lock;
 
+import observo.jfr.ObservoEvents;
+import observo.metrics.LatencyRecorder;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class DistributedLock {
 
+    private final String path;
     private final long lockTimeoutMs;
     private final InterProcessSemaphoreMutex lock;
+    private final LatencyRecorder lockWait;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DistributedLock.class);
 
     public DistributedLock(CuratorFramework client, String path, long lockTimeoutMs) {
+        this(client, path, lockTimeoutMs, LatencyRecorder.NONE);
+    }
+
+    /**
+     * @param lockWait records the time waited for the lock, whether it is acquired or not
+     */
+    public DistributedLock(CuratorFramework client, String path, long lockTimeoutMs, LatencyRecorder lockWait) {
+        this.path = path;
         this.lockTimeoutMs = lockTimeoutMs;
         this.lock = new InterProcessSemaphoreMutex(client, path);
-
+        this.lockWait = lockWait;
     }
 
     public void acquireLock() {
         try {
-            boolean acquired = lock.acquire(lockTimeoutMs, TimeUnit.MILLISECONDS);
-            if (!acquired) {
+            if (!tryAcquireLock()) {
                 LOGGER.error("could not acquire the lock within {} ms", lockTimeoutMs);
             }
         } catch(Exception e) {
@@ -31,11 +46,45 @@ public class DistributedLock {
         }
     }
 
+    /**
+     * Acquires the lock on the given executor, as curator only acquires it blocking: one of its threads waits for up
+     * to the lock timeout, so the executor must not be one the holder of the lock needs to make progress.
+     * @return completed exceptionally, with a {@link TimeoutException} if the lock could not be acquired in time,
+     * or with the exception raised while acquiring it
+     */
+    public CompletableFuture<Void> acquireLockAsync(Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!tryAcquireLock()) {
+                    throw new TimeoutException("could not acquire the lock " + path + " within " + lockTimeoutMs + " ms");
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private boolean tryAcquireLock() throws Exception {
+        long start = System.nanoTime();
+        Object event = ObservoEvents.beginLockAcquire();
+        boolean acquired = false;
+        try {
+            acquired = lock.acquire(lockTimeoutMs, TimeUnit.MILLISECONDS);
+            return acquired;
+        } finally {
+            lockWait.recordSince(start);
+            ObservoEvents.commitLockAcquire(event, path, acquired);
+        }
+    }
+
     public void releaseLock() {
+        Object event = ObservoEvents.beginLockRelease();
         try {
             lock.release();
         } catch (Exception e) {
             LOGGER.error("Exception while releasing the lock: {}", e);
+        } finally {
+            ObservoEvents.commitLockRelease(event, path);
         }
     }
 
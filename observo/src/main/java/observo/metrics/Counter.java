@@ -0,0 +1,12 @@
+package observo.metrics;
+
+/**
+ * Counts the events of an observable, e.g. timeouts or payload bytes.
+ */
+@FunctionalInterface
+public interface Counter {
+
+    Counter NONE = delta -> {};
+
+    void increment(long delta);
+}
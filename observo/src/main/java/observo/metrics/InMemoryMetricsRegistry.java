@@ -0,0 +1,183 @@
+package observo.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the metrics of the observables in memory, as latency histograms and counters,
+ * optionally publishing them over JMX as one MBean per observable, named {@code observo:type=Observable,name=<observable>}.
+ * The shared instance, used unless another registry is configured, publishes over JMX.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryMetricsRegistry.class);
+
+    private static final InMemoryMetricsRegistry SHARED = new InMemoryMetricsRegistry(true);
+
+    private static final String[] PERCENTILES = {"p50", "p90", "p99", "p999"};
+    private static final double[] PERCENTILE_VALUES = {50, 90, 99, 99.9};
+
+    private final boolean jmx;
+    private final Map<String, ObservableMetrics> observables = new ConcurrentHashMap<>();
+
+    /**
+     * @param jmx whether the metrics of every observable are published as an MBean
+     */
+    public InMemoryMetricsRegistry(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    public static InMemoryMetricsRegistry shared() {
+        return SHARED;
+    }
+
+    @Override
+    public LatencyRecorder latency(String observable, String metric) {
+        return getHistogram(observable, metric);
+    }
+
+    @Override
+    public Counter counter(String observable, String metric) {
+        return metrics(observable).counters.computeIfAbsent(metric, m -> new LongAdder())::add;
+    }
+
+    public LatencyHistogram getHistogram(String observable, String metric) {
+        return metrics(observable).histograms.computeIfAbsent(metric, m -> new LatencyHistogram());
+    }
+
+    public long getCount(String observable, String metric) {
+        LongAdder counter = metrics(observable).counters.get(metric);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    private ObservableMetrics metrics(String observable) {
+        return observables.computeIfAbsent(observable, name -> {
+            ObservableMetrics metrics = new ObservableMetrics(name);
+            if (jmx) {
+                register(metrics);
+            }
+            return metrics;
+        });
+    }
+
+    private void register(ObservableMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("observo:type=Observable,name=" + ObjectName.quote(metrics.observable));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("could not publish the metrics of {} over JMX: {}", metrics.observable, e.toString());
+        }
+    }
+
+    /**
+     * The metrics of a single observable; its attributes are named after the metric, followed by the statistic for latencies.
+     */
+    private static class ObservableMetrics implements DynamicMBean {
+
+        private final String observable;
+        private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+        private ObservableMetrics(String observable) {
+            this.observable = observable;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            for (String counter : Metrics.COUNTERS) {
+                if (counter.equals(attribute)) {
+                    LongAdder adder = counters.get(counter);
+                    return adder == null ? 0L : adder.sum();
+                }
+            }
+            int separator = attribute.lastIndexOf('.');
+            if (separator > 0) {
+                LatencyHistogram histogram = histograms.getOrDefault(attribute.substring(0, separator), new LatencyHistogram());
+                String statistic = attribute.substring(separator + 1);
+                switch (statistic) {
+                    case "count":
+                        return histogram.getCount();
+                    case "mean":
+                        return histogram.getMean();
+                    case "max":
+                        return histogram.getMax();
+                    default:
+                        for (int i = 0; i < PERCENTILES.length; i++) {
+                            if (PERCENTILES[i].equals(statistic)) {
+                                return histogram.getPercentile(PERCENTILE_VALUES[i]);
+                            }
+                        }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // omitted, as the contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("read-only attribute " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (String latency : Metrics.LATENCIES) {
+                attributes.add(attribute(latency + ".count", "long", "recorded " + latency + " latencies"));
+                attributes.add(attribute(latency + ".mean", "double", "mean " + latency + " latency in ns"));
+                for (String percentile : PERCENTILES) {
+                    attributes.add(attribute(latency + "." + percentile, "long", percentile + " " + latency + " latency in ns"));
+                }
+                attributes.add(attribute(latency + ".max", "long", "max " + latency + " latency in ns"));
+            }
+            for (String counter : Metrics.COUNTERS) {
+                attributes.add(attribute(counter, "long", counter));
+            }
+            return new MBeanInfo(ObservableMetrics.class.getName(), "metrics of " + observable,
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name, String type, String description) {
+            return new MBeanAttributeInfo(name, type, description, true, false, false);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package observo.metrics;
+
+/**
+ * Records the latencies of a step of the notification pipeline of an observable.
+ */
+@FunctionalInterface
+public interface LatencyRecorder {
+
+    LatencyRecorder NONE = nanos -> {};
+
+    void record(long nanos);
+
+    /**
+     * Records the time elapsed since the given {@link System#nanoTime()}.
+     */
+    default void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+}
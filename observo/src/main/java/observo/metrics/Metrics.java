@@ -0,0 +1,65 @@
+package observo.metrics;
+
+/**
+ * Names of the metrics recorded for every observable; latencies are in nanoseconds.
+ */
+public final class Metrics {
+
+    /**
+     * Time waited for the distributed lock, by the publisher and on registration.
+     */
+    public static final String LOCK_WAIT = "lock.wait";
+
+    /**
+     * Time taken to encode the notified data and to frame it into the payload, storing its chunks or base if any.
+     */
+    public static final String ENCODE = "encode";
+
+    /**
+     * Time from issuing the write of a notification to its confirmation by zookeeper.
+     */
+    public static final String PUBLISH = "publish";
+
+    /**
+     * Time from the write of a notification to the acknowledgement of each observer process.
+     */
+    public static final String ACK = "ack";
+
+    /**
+     * Time taken by the watcher to read a notified payload, chunks and base included, or a batch of event log entries.
+     */
+    public static final String READ = "read";
+
+    /**
+     * Time taken to decode each notified item.
+     */
+    public static final String DECODE = "decode";
+
+    /**
+     * Time taken by each observer update.
+     */
+    public static final String UPDATE = "update";
+
+    /**
+     * Time from the publish of a notification, on the wall clock of the publisher, to the end of each observer update;
+     * clock skew between the hosts adds to it.
+     */
+    public static final String PROPAGATION = "propagation";
+
+    public static final String NOTIFICATIONS = "notifications";
+    public static final String TIMEOUTS = "timeouts";
+    public static final String ERRORS = "errors";
+    public static final String BYTES_WRITTEN = "bytes.written";
+    public static final String BYTES_READ = "bytes.read";
+
+    /**
+     * Notifications discarded by the overflow policy of an observer's dispatch lane.
+     */
+    public static final String DROPPED = "dropped";
+
+    static final String[] LATENCIES = {LOCK_WAIT, ENCODE, PUBLISH, ACK, READ, DECODE, UPDATE, PROPAGATION};
+    static final String[] COUNTERS = {NOTIFICATIONS, TIMEOUTS, ERRORS, BYTES_WRITTEN, BYTES_READ, DROPPED};
+
+    private Metrics() {
+    }
+}
@@ -0,0 +1,35 @@
+package observo.metrics;
+
+/**
+ * Receives the metrics of the observables; implement it to forward them to the metrics library of the application.
+ * Recorders are requested once, when an observable is created, and then called on the notification pipeline,
+ * often on the zookeeper event thread: they must be cheap and must not block.
+ * @see Metrics for the names of the metrics
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Registry discarding all the metrics.
+     */
+    MetricsRegistry NONE = new MetricsRegistry() {
+        @Override
+        public LatencyRecorder latency(String observable, String metric) {
+            return LatencyRecorder.NONE;
+        }
+
+        @Override
+        public Counter counter(String observable, String metric) {
+            return Counter.NONE;
+        }
+    };
+
+    /**
+     * @param observable the name of the observable, including the namespace
+     */
+    LatencyRecorder latency(String observable, String metric);
+
+    /**
+     * @param observable the name of the observable, including the namespace
+     */
+    Counter counter(String observable, String metric);
+}
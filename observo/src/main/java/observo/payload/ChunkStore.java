@@ -0,0 +1,133 @@
+package observo.payload;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores payloads too large for a single node as a set of chunk nodes:
+ * <pre>
+ * chunksPath/set-0000000001/0
+ *                          /1
+ *                          ...
+ * </pre>
+ * Chunk sets are immutable; the observable node only holds a header pointing to the chunk set,
+ * so writing the pointer is what makes a new chunk set visible to the observers.
+ */
+public class ChunkStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkStore.class);
+
+    private static final String CHUNK_SET_PREFIX = "set-";
+
+    private final CuratorFramework client;
+    private final String chunksPath;
+    private final int chunkSizeBytes;
+    private final int retainedChunkSets;
+
+    /**
+     * @param retainedChunkSets chunk sets kept, including the one being written; observers may still
+     *                          be reading the previous ones
+     */
+    public ChunkStore(CuratorFramework client, String chunksPath, int chunkSizeBytes, int retainedChunkSets) {
+        this.client = client;
+        this.chunksPath = chunksPath;
+        this.chunkSizeBytes = chunkSizeBytes;
+        this.retainedChunkSets = retainedChunkSets;
+    }
+
+    boolean isEnabled() {
+        return chunkSizeBytes > 0;
+    }
+
+    int getChunkSizeBytes() {
+        return chunkSizeBytes;
+    }
+
+    /**
+     * Writes the payload into a new chunk set.
+     * @return the pointer to be written into the observable node
+     */
+    byte[] store(byte[] payload) throws Exception {
+        String chunkSetPath = client.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.PERSISTENT_SEQUENTIAL)
+                .forPath(ZKPaths.makePath(chunksPath, CHUNK_SET_PREFIX));
+        String chunkSet = ZKPaths.getNodeFromPath(chunkSetPath);
+
+        int chunkCount = (payload.length + chunkSizeBytes - 1) / chunkSizeBytes;
+        for (int i = 0; i < chunkCount; i++) {
+            int from = i * chunkSizeBytes;
+            int to = Math.min(payload.length, from + chunkSizeBytes);
+            client.create().forPath(ZKPaths.makePath(chunkSetPath, String.valueOf(i)), Arrays.copyOfRange(payload, from, to));
+        }
+        LOGGER.debug("payload of {} bytes stored in {} chunks under {}", payload.length, chunkCount, chunkSetPath);
+
+        deleteOldChunkSets();
+        return PayloadHeader.chunked(chunkSet, chunkSizeBytes, chunkCount, payload.length).write(new byte[0]);
+    }
+
+    /**
+     * @return whether the chunk set the header points to has not been deleted
+     */
+    boolean exists(PayloadHeader header) throws Exception {
+        return client.checkExists().forPath(ZKPaths.makePath(chunksPath, header.getChunkSet())) != null;
+    }
+
+    /**
+     * Reads all the chunks in parallel and reassembles them.
+     * The future completes on the zookeeper event thread once the last chunk has been received.
+     */
+    CompletableFuture<byte[]> fetch(PayloadHeader header) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        byte[] payload = new byte[header.getOriginalLength()];
+        AtomicInteger remaining = new AtomicInteger(header.getChunkCount());
+        String chunkSetPath = ZKPaths.makePath(chunksPath, header.getChunkSet());
+
+        BackgroundCallback callback = (c, event) -> {
+            try {
+                if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+                    throw KeeperException.create(KeeperException.Code.get(event.getResultCode()), event.getPath());
+                }
+                byte[] chunk = event.getData();
+                System.arraycopy(chunk, 0, payload, (Integer) event.getContext() * header.getChunkSize(), chunk.length);
+                if (remaining.decrementAndGet() == 0) {
+                    future.complete(payload);
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        try {
+            for (int i = 0; i < header.getChunkCount(); i++) {
+                client.getData().inBackground(callback, i).forPath(ZKPaths.makePath(chunkSetPath, String.valueOf(i)));
+            }
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void deleteOldChunkSets() {
+        try {
+            List<String> chunkSets = client.getChildren().forPath(chunksPath);
+            Collections.sort(chunkSets);
+            for (String chunkSet : chunkSets.subList(0, Math.max(0, chunkSets.size() - retainedChunkSets))) {
+                client.delete().deletingChildrenIfNeeded().forPath(ZKPaths.makePath(chunksPath, chunkSet));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("could not delete old chunk sets under {}: {}", chunksPath, e.toString());
+        }
+    }
+}
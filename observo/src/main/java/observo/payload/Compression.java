@@ -0,0 +1,100 @@
+package observo.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression algorithms that can be applied to the payloads; the id is written into the payload header.
+ */
+public enum Compression {
+
+    NONE(0) {
+        @Override
+        byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+            byte[] decompressed = new byte[length];
+            System.arraycopy(data, offset, decompressed, 0, length);
+            return decompressed;
+        }
+    },
+
+    DEFLATE(1) {
+        private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+        private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+        @Override
+        byte[] compress(byte[] data) {
+            Deflater deflater = deflaters.get();
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.reset();
+            }
+        }
+
+        @Override
+        byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+            Inflater inflater = inflaters.get();
+            try {
+                inflater.setInput(data, offset, length);
+                byte[] decompressed = new byte[originalLength];
+                int total = 0;
+                while (total < originalLength && !inflater.finished()) {
+                    int count = inflater.inflate(decompressed, total, originalLength - total);
+                    if (count == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    total += count;
+                }
+                if (total != originalLength) {
+                    throw new IOException("corrupted payload: expected " + originalLength + " bytes, inflated " + total);
+                }
+                return decompressed;
+            } catch (DataFormatException e) {
+                throw new IOException("corrupted payload", e);
+            } finally {
+                inflater.reset();
+            }
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int id;
+
+    Compression(int id) {
+        this.id = id;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    abstract byte[] compress(byte[] data);
+
+    abstract byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+
+    static Compression fromId(int id) throws IOException {
+        for (Compression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IOException("unknown compression id " + id);
+    }
+}
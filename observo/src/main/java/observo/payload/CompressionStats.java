@@ -0,0 +1,58 @@
+package observo.payload;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compression statistics of an observable, collected by the publisher.
+ */
+public class CompressionStats {
+
+    private final LongAdder payloads = new LongAdder();
+    private final LongAdder compressedPayloads = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder writtenBytes = new LongAdder();
+
+    void record(int uncompressedLength, int writtenLength, boolean compressed) {
+        payloads.increment();
+        if (compressed) {
+            compressedPayloads.increment();
+        }
+        uncompressedBytes.add(uncompressedLength);
+        writtenBytes.add(writtenLength);
+    }
+
+    public long getPayloads() {
+        return payloads.sum();
+    }
+
+    public long getCompressedPayloads() {
+        return compressedPayloads.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.sum();
+    }
+
+    /**
+     * @return written bytes / uncompressed bytes; 1.0 when nothing has been written yet
+     */
+    public double getRatio() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0 ? 1.0 : (double) getWrittenBytes() / uncompressed;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "payloads=" + getPayloads() +
+                ", compressedPayloads=" + getCompressedPayloads() +
+                ", uncompressedBytes=" + getUncompressedBytes() +
+                ", writtenBytes=" + getWrittenBytes() +
+                ", ratio=" + getRatio() +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+package observo.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary diff of a target against a base, as a sequence of instructions:
+ * <pre>
+ * COPY (1 byte) | base offset (4 bytes) | length (4 bytes)
+ * ADD (1 byte) | length (4 bytes) | bytes
+ * </pre>
+ * The blocks of the base are indexed by hash and the target is scanned with a rolling hash;
+ * every matching block is extended in both directions, so that changes shifting the rest of the data cost no more than the change itself.
+ */
+final class Delta {
+
+    private static final byte COPY = 0;
+    private static final byte ADD = 1;
+    private static final int BLOCK_SIZE = 16;
+    private static final int PRIME = 257;
+    private static final int PRIME_POWER = power(PRIME, BLOCK_SIZE - 1);
+
+    private Delta() {
+    }
+
+    static byte[] diff(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        if (base.length < BLOCK_SIZE || target.length < BLOCK_SIZE) {
+            add(out, target, 0, target.length);
+            return out.toByteArray();
+        }
+
+        Map<Integer, Integer> blocks = new HashMap<>(2 * base.length / BLOCK_SIZE);
+        for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+            blocks.putIfAbsent(hash(base, offset), offset);
+        }
+
+        int literalStart = 0;
+        int position = 0;
+        int hash = hash(target, 0);
+        while (position + BLOCK_SIZE <= target.length) {
+            Integer match = blocks.get(hash);
+            if (match != null && matches(base, match, target, position)) {
+                int baseOffset = match;
+                int targetOffset = position;
+                while (baseOffset > 0 && targetOffset > literalStart && base[baseOffset - 1] == target[targetOffset - 1]) {
+                    baseOffset--;
+                    targetOffset--;
+                }
+                int length = position - targetOffset + BLOCK_SIZE;
+                while (baseOffset + length < base.length && targetOffset + length < target.length
+                        && base[baseOffset + length] == target[targetOffset + length]) {
+                    length++;
+                }
+                add(out, target, literalStart, targetOffset - literalStart);
+                copy(out, baseOffset, length);
+                position = targetOffset + length;
+                literalStart = position;
+                if (position + BLOCK_SIZE <= target.length) {
+                    hash = hash(target, position);
+                }
+            } else {
+                if (position + BLOCK_SIZE < target.length) {
+                    hash = (hash - (target[position] & 0xff) * PRIME_POWER) * PRIME + (target[position + BLOCK_SIZE] & 0xff);
+                }
+                position++;
+            }
+        }
+        add(out, target, literalStart, target.length - literalStart);
+        return out.toByteArray();
+    }
+
+    static byte[] apply(byte[] base, byte[] delta, int targetLength) throws IOException {
+        byte[] target = new byte[targetLength];
+        int position = 0;
+        try {
+            ByteBuffer instructions = ByteBuffer.wrap(delta);
+            while (instructions.hasRemaining()) {
+                byte instruction = instructions.get();
+                if (instruction == COPY) {
+                    int offset = instructions.getInt();
+                    int length = instructions.getInt();
+                    System.arraycopy(base, offset, target, position, length);
+                    position += length;
+                } else if (instruction == ADD) {
+                    int length = instructions.getInt();
+                    instructions.get(target, position, length);
+                    position += length;
+                } else {
+                    throw new IOException("corrupted delta: unknown instruction " + instruction);
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("corrupted delta", e);
+        }
+        if (position != targetLength) {
+            throw new IOException("corrupted delta: expected " + targetLength + " bytes, rebuilt " + position);
+        }
+        return target;
+    }
+
+    private static void copy(ByteArrayOutputStream out, int offset, int length) {
+        out.write(COPY);
+        writeInt(out, offset);
+        writeInt(out, length);
+    }
+
+    private static void add(ByteArrayOutputStream out, byte[] data, int offset, int length) {
+        if (length > 0) {
+            out.write(ADD);
+            writeInt(out, length);
+            out.write(data, offset, length);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static boolean matches(byte[] base, int baseOffset, byte[] target, int targetOffset) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (base[baseOffset + i] != target[targetOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int hash = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            hash = hash * PRIME + (data[offset + i] & 0xff);
+        }
+        return hash;
+    }
+
+    private static int power(int base, int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+package observo.payload;
+
+import java.util.UUID;
+
+/**
+ * Identity of a notification, written by the publisher into the payload header:
+ * observers can tell which publish the data comes from, and when it happened.
+ */
+public class Envelope {
+
+    private final UUID id;
+    private final long publishTimeMs;
+    private final String publisher;
+
+    public Envelope(UUID id, long publishTimeMs, String publisher) {
+        this.id = id;
+        this.publishTimeMs = publishTimeMs;
+        this.publisher = publisher;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * @return the wall clock time of the publisher when the notification was written, in milliseconds since the epoch
+     */
+    public long getPublishTimeMs() {
+        return publishTimeMs;
+    }
+
+    /**
+     * @return the host name of the publisher
+     */
+    public String getPublisher() {
+        return publisher;
+    }
+
+    @Override
+    public String toString() {
+        return "Envelope{" +
+                "id=" + id +
+                ", publishTimeMs=" + publishTimeMs +
+                ", publisher='" + publisher + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,92 @@
+package observo.payload;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encoded data carried by a notification: a single item, or all the items of a batch.
+ * The body of a batch is:
+ * <pre>
+ * item count (4 bytes) | item length (4 bytes) | item | item length (4 bytes) | item ...
+ * </pre>
+ */
+public class Payload {
+
+    private final byte[] body;
+    private final boolean batch;
+    private final Envelope envelope;
+
+    Payload(byte[] body, boolean batch) {
+        this(body, batch, null);
+    }
+
+    Payload(byte[] body, boolean batch, Envelope envelope) {
+        this.body = body;
+        this.batch = batch;
+        this.envelope = envelope;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * @return the identity of the notification, null if the payload was written by an older version
+     */
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    public List<byte[]> getItems() {
+        if (!batch) {
+            return Collections.singletonList(body);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int count = buffer.getInt();
+        List<byte[]> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] item = new byte[buffer.getInt()];
+            buffer.get(item);
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * @return read-only views of the items, sharing the body rather than copying it
+     */
+    public List<ByteBuffer> getItemBuffers() {
+        ByteBuffer buffer = ByteBuffer.wrap(body).asReadOnlyBuffer();
+        if (!batch) {
+            return Collections.singletonList(buffer);
+        }
+        int count = buffer.getInt();
+        List<ByteBuffer> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            ByteBuffer item = buffer.slice();
+            item.limit(length);
+            items.add(item);
+            buffer.position(buffer.position() + length);
+        }
+        return items;
+    }
+
+    static byte[] batchBody(List<byte[]> items) {
+        int length = Integer.BYTES;
+        for (byte[] item : items) {
+            length += Integer.BYTES + item.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).putInt(items.size());
+        for (byte[] item : items) {
+            buffer.putInt(item.length).put(item);
+        }
+        return buffer.array();
+    }
+}
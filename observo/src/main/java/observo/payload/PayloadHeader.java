@@ -0,0 +1,223 @@
+package observo.payload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Header prepended to every payload written into an observable node:
+ * <pre>
+ * magic (2 bytes) | format version (1 byte) | flags (1 byte) | flag dependent fields | body
+ * </pre>
+ * Payloads not starting with the magic are considered bare bodies written by an older version.
+ * The body of a delta payload is a {@link Delta} against the base pointed to by the header,
+ * which is stored once as a chunk set.
+ * The envelope, when present, identifies the notification the payload was written for.
+ */
+class PayloadHeader {
+
+    static final byte MAGIC_0 = 0x4F;
+    static final byte MAGIC_1 = 0x42;
+    static final byte FORMAT_VERSION = 1;
+    static final int BASE_LENGTH = 4;
+
+    static final int FLAG_COMPRESSED = 1;
+    static final int FLAG_CHUNKED = 1 << 1;
+    static final int FLAG_BATCH = 1 << 2;
+    static final int FLAG_DELTA = 1 << 3;
+    static final int FLAG_ENVELOPE = 1 << 4;
+
+    private int flags;
+    private final Compression compression;
+    private final int originalLength;
+    private final String chunkSet;
+    private final int chunkSize;
+    private final int chunkCount;
+    private PayloadHeader base;
+    private int targetLength;
+    private Envelope envelope;
+    private int bodyOffset;
+
+    private PayloadHeader(int flags, Compression compression, int originalLength, String chunkSet, int chunkSize, int chunkCount) {
+        this.flags = flags;
+        this.compression = compression;
+        this.originalLength = originalLength;
+        this.chunkSet = chunkSet;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+    }
+
+    static PayloadHeader plain(int length) {
+        return new PayloadHeader(0, Compression.NONE, length, null, 0, 0);
+    }
+
+    static PayloadHeader compressed(Compression compression, int originalLength) {
+        return new PayloadHeader(FLAG_COMPRESSED, compression, originalLength, null, 0, 0);
+    }
+
+    static PayloadHeader chunked(String chunkSet, int chunkSize, int chunkCount, int totalLength) {
+        return new PayloadHeader(FLAG_CHUNKED, Compression.NONE, totalLength, chunkSet, chunkSize, chunkCount);
+    }
+
+    PayloadHeader batch(boolean batch) {
+        if (batch) {
+            flags |= FLAG_BATCH;
+        }
+        return this;
+    }
+
+    /**
+     * @param base pointer to the chunk set holding the base the body is a delta against
+     * @param targetLength length of the data rebuilt from the base and the delta
+     */
+    PayloadHeader delta(PayloadHeader base, int targetLength) {
+        flags |= FLAG_DELTA;
+        this.base = base;
+        this.targetLength = targetLength;
+        return this;
+    }
+
+    PayloadHeader envelope(Envelope envelope) {
+        if (envelope != null) {
+            flags |= FLAG_ENVELOPE;
+            this.envelope = envelope;
+        }
+        return this;
+    }
+
+    byte[] write(byte[] body) {
+        byte[] chunkSetBytes = isChunked() ? chunkSet.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] baseSetBytes = isDelta() ? base.chunkSet.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] publisherBytes = hasEnvelope() ? envelope.getPublisher().getBytes(StandardCharsets.UTF_8) : null;
+        int length = BASE_LENGTH
+                + (isCompressed() ? 5 : 0)
+                + (isChunked() ? 2 + chunkSetBytes.length + 12 : 0)
+                + (isDelta() ? 2 + baseSetBytes.length + 16 : 0)
+                + (hasEnvelope() ? 24 + 2 + publisherBytes.length : 0)
+                + body.length;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(FORMAT_VERSION).put((byte) flags);
+        if (isCompressed()) {
+            buffer.put((byte) compression.getId()).putInt(originalLength);
+        }
+        if (isChunked()) {
+            buffer.putShort((short) chunkSetBytes.length).put(chunkSetBytes);
+            buffer.putInt(chunkSize).putInt(chunkCount).putInt(originalLength);
+        }
+        if (isDelta()) {
+            buffer.putShort((short) baseSetBytes.length).put(baseSetBytes);
+            buffer.putInt(base.chunkSize).putInt(base.chunkCount).putInt(base.originalLength).putInt(targetLength);
+        }
+        if (hasEnvelope()) {
+            buffer.putLong(envelope.getId().getMostSignificantBits()).putLong(envelope.getId().getLeastSignificantBits());
+            buffer.putLong(envelope.getPublishTimeMs());
+            buffer.putShort((short) publisherBytes.length).put(publisherBytes);
+        }
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    static PayloadHeader parse(byte[] payload) throws IOException {
+        if (!hasHeader(payload)) {
+            return plain(payload.length);
+        }
+        if (payload[2] != FORMAT_VERSION) {
+            throw new IOException("unsupported payload format version " + payload[2]);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, BASE_LENGTH, payload.length - BASE_LENGTH);
+        int flags = payload[3];
+        PayloadHeader header;
+        if ((flags & FLAG_CHUNKED) != 0) {
+            header = parseChunkSet(buffer);
+        } else if ((flags & FLAG_COMPRESSED) != 0) {
+            Compression compression = Compression.fromId(buffer.get());
+            header = compressed(compression, buffer.getInt());
+        } else {
+            header = plain(buffer.remaining());
+        }
+        header.batch((flags & FLAG_BATCH) != 0);
+        if ((flags & FLAG_DELTA) != 0) {
+            PayloadHeader base = parseChunkSet(buffer);
+            header.delta(base, buffer.getInt());
+        }
+        if ((flags & FLAG_ENVELOPE) != 0) {
+            UUID id = new UUID(buffer.getLong(), buffer.getLong());
+            long publishTimeMs = buffer.getLong();
+            byte[] publisherBytes = new byte[buffer.getShort()];
+            buffer.get(publisherBytes);
+            header.envelope(new Envelope(id, publishTimeMs, new String(publisherBytes, StandardCharsets.UTF_8)));
+        }
+        header.bodyOffset = buffer.position();
+        return header;
+    }
+
+    private static PayloadHeader parseChunkSet(ByteBuffer buffer) {
+        byte[] chunkSetBytes = new byte[buffer.getShort()];
+        buffer.get(chunkSetBytes);
+        String chunkSet = new String(chunkSetBytes, StandardCharsets.UTF_8);
+        int chunkSize = buffer.getInt();
+        int chunkCount = buffer.getInt();
+        return chunked(chunkSet, chunkSize, chunkCount, buffer.getInt());
+    }
+
+    private static boolean hasHeader(byte[] payload) {
+        return payload.length >= BASE_LENGTH && payload[0] == MAGIC_0 && payload[1] == MAGIC_1;
+    }
+
+    boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    boolean isChunked() {
+        return (flags & FLAG_CHUNKED) != 0;
+    }
+
+    boolean isBatch() {
+        return (flags & FLAG_BATCH) != 0;
+    }
+
+    boolean isDelta() {
+        return (flags & FLAG_DELTA) != 0;
+    }
+
+    boolean hasEnvelope() {
+        return (flags & FLAG_ENVELOPE) != 0;
+    }
+
+    Envelope getEnvelope() {
+        return envelope;
+    }
+
+    PayloadHeader getBase() {
+        return base;
+    }
+
+    int getTargetLength() {
+        return targetLength;
+    }
+
+    Compression getCompression() {
+        return compression;
+    }
+
+    int getOriginalLength() {
+        return originalLength;
+    }
+
+    String getChunkSet() {
+        return chunkSet;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    int getBodyOffset() {
+        return bodyOffset;
+    }
+}
@@ -0,0 +1,92 @@
+package observo.payload;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Extracts the encoded data from the bytes read from the observable node,
+ * fetching the chunks when the payload has been chunked.
+ * Deltas are applied to the latest base, which is cached; a delta against another base fetches that base in full first.
+ */
+public class PayloadReader {
+
+    private final ChunkStore chunkStore;
+    private final ChunkStore baseStore;
+    private volatile Base cachedBase;
+
+    /**
+     * Reader for payloads that are never chunked.
+     */
+    public PayloadReader() {
+        this(null);
+    }
+
+    /**
+     * Reader for payloads that are never deltas.
+     */
+    public PayloadReader(ChunkStore chunkStore) {
+        this(chunkStore, null);
+    }
+
+    public PayloadReader(ChunkStore chunkStore, ChunkStore baseStore) {
+        this.chunkStore = chunkStore;
+        this.baseStore = baseStore;
+    }
+
+    public CompletableFuture<Payload> read(byte[] payload) {
+        try {
+            PayloadHeader header = PayloadHeader.parse(payload);
+            if (header.isChunked()) {
+                if (chunkStore == null) {
+                    throw new IOException("chunked payload cannot be read without a chunk store");
+                }
+                return chunkStore.fetch(header).thenCompose(this::read);
+            }
+            int bodyOffset = header.getBodyOffset();
+            byte[] body = header.getCompression().decompress(payload, bodyOffset, payload.length - bodyOffset, header.getOriginalLength());
+            if (header.isDelta()) {
+                return base(header.getBase()).thenApply(base -> {
+                    try {
+                        return new Payload(Delta.apply(base, body, header.getTargetLength()), header.isBatch(), header.getEnvelope());
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+            }
+            return CompletableFuture.completedFuture(new Payload(body, header.isBatch(), header.getEnvelope()));
+
+        } catch (IOException e) {
+            CompletableFuture<Payload> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private CompletableFuture<byte[]> base(PayloadHeader basePointer) throws IOException {
+        Base base = cachedBase;
+        if (base != null && base.chunkSet.equals(basePointer.getChunkSet())) {
+            return CompletableFuture.completedFuture(base.data);
+        }
+        if (baseStore == null) {
+            throw new IOException("delta payload cannot be read without a base store");
+        }
+        return baseStore.fetch(basePointer)
+                .thenCompose(this::read)
+                .thenApply(read -> {
+                    cachedBase = new Base(basePointer.getChunkSet(), read.getBody());
+                    return read.getBody();
+                });
+    }
+
+    private static class Base {
+
+        private final String chunkSet;
+        private final byte[] data;
+
+        private Base(String chunkSet, byte[] data) {
+            this.chunkSet = chunkSet;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package observo.payload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Frames the encoded data before it is written into the observable node,
+ * compressing it when it is larger than the configured threshold
+ * and splitting it into chunks when it is larger than the chunk size.
+ * With delta encoding, the encoded data is written as a diff against a base stored once in the base store;
+ * a new base is stored when the diff grows beyond the rebase ratio of the encoded data, or when the base has been
+ * deleted meanwhile, as the bases stored by the other publishers of the observable trim the older ones.
+ */
+public class PayloadWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PayloadWriter.class);
+
+    // jute.maxbuffer bounds the whole request, leave some room for the request envelope
+    public static final int MAX_NODE_DATA_BYTES = Integer.getInteger("jute.maxbuffer", 0xfffff) - 1024;
+
+    private final Compression compression;
+    private final int compressionThresholdBytes;
+    private final ChunkStore chunkStore;
+    private final ChunkStore baseStore;
+    private final int deltaThresholdBytes;
+    private final double rebaseRatio;
+    private final CompressionStats compressionStats = new CompressionStats();
+    private final Object deltaLock = new Object();
+    private byte[] base;
+    private PayloadHeader basePointer;
+
+    /**
+     * Writer that never chunks the payloads.
+     */
+    public PayloadWriter(Compression compression, int compressionThresholdBytes) {
+        this(compression, compressionThresholdBytes, null);
+    }
+
+    /**
+     * Writer that never writes deltas.
+     */
+    public PayloadWriter(Compression compression, int compressionThresholdBytes, ChunkStore chunkStore) {
+        this(compression, compressionThresholdBytes, chunkStore, null, 0, 0);
+    }
+
+    /**
+     * @param baseStore store of the bases the deltas are written against, null to never write deltas
+     * @param deltaThresholdBytes size of the encoded data from which it is written as a delta
+     * @param rebaseRatio delta size, relative to the encoded data, beyond which a new base is stored
+     */
+    public PayloadWriter(Compression compression, int compressionThresholdBytes, ChunkStore chunkStore,
+                         ChunkStore baseStore, int deltaThresholdBytes, double rebaseRatio) {
+        this.compression = compression;
+        this.compressionThresholdBytes = compressionThresholdBytes;
+        this.chunkStore = chunkStore;
+        this.baseStore = baseStore;
+        this.deltaThresholdBytes = deltaThresholdBytes;
+        this.rebaseRatio = rebaseRatio;
+    }
+
+    /**
+     * @return the bytes to be written into the observable node
+     */
+    public byte[] write(byte[] encoded) throws Exception {
+        return write(encoded, null);
+    }
+
+    /**
+     * @param envelope identity of the notification, null to write none
+     * @return the bytes to be written into the observable node
+     */
+    public byte[] write(byte[] encoded, Envelope envelope) throws Exception {
+        return store(frameDeltaIfEnabled(encoded, false, envelope));
+    }
+
+    /**
+     * @return the bytes to be written into the observable node, carrying all the items of the batch
+     */
+    public byte[] writeBatch(List<byte[]> encodedItems) throws Exception {
+        return writeBatch(encodedItems, null);
+    }
+
+    /**
+     * @param envelope identity of the notification, null to write none
+     * @return the bytes to be written into the observable node, carrying all the items of the batch
+     */
+    public byte[] writeBatch(List<byte[]> encodedItems, Envelope envelope) throws Exception {
+        return store(frameDeltaIfEnabled(Payload.batchBody(encodedItems), true, envelope));
+    }
+
+    private byte[] frameDeltaIfEnabled(byte[] encoded, boolean batch, Envelope envelope) throws Exception {
+        if (baseStore == null || encoded.length < deltaThresholdBytes) {
+            return frame(encoded, batch, encoded.length, null, envelope);
+        }
+        synchronized (deltaLock) {
+            if (base != null && !baseStore.exists(basePointer)) {
+                LOGGER.debug("base {} has been deleted by another publisher", basePointer.getChunkSet());
+                base = null;
+            }
+            byte[] delta = base == null ? null : Delta.diff(base, encoded);
+            if (delta == null || delta.length > encoded.length * rebaseRatio) {
+                // even the notification storing a new base is written as a delta against it:
+                // the observers fetch the base once, rather than receiving it twice
+                basePointer = PayloadHeader.parse(baseStore.store(frameBase(encoded)));
+                base = encoded;
+                delta = Delta.diff(base, encoded);
+                LOGGER.debug("new base of {} bytes stored in {}", encoded.length, basePointer.getChunkSet());
+            }
+            return frame(delta, batch, encoded.length, basePointer, envelope);
+        }
+    }
+
+    private byte[] store(byte[] payload) throws Exception {
+        if (chunkStore != null && chunkStore.isEnabled() && payload.length > chunkStore.getChunkSizeBytes()) {
+            return chunkStore.store(payload);
+        }
+        if (payload.length > MAX_NODE_DATA_BYTES) {
+            throw new IOException("payload of " + payload.length + " bytes exceeds the maximum node size of "
+                    + MAX_NODE_DATA_BYTES + " bytes; chunking should be enabled");
+        }
+        return payload;
+    }
+
+    /**
+     * Frames a base, left out of the statistics as the delta written along with it already accounts for the encoded data.
+     */
+    private byte[] frameBase(byte[] encoded) {
+        return frame(encoded, false, encoded.length, null, null, false);
+    }
+
+    /**
+     * @param encodedLength length of the encoded data the body stands for, accounted as uncompressed in the statistics
+     * @param basePointer base the body is a delta against, null if the body is the encoded data itself
+     * @param envelope identity of the notification, null to write none
+     */
+    private byte[] frame(byte[] body, boolean batch, int encodedLength, PayloadHeader basePointer, Envelope envelope) {
+        return frame(body, batch, encodedLength, basePointer, envelope, true);
+    }
+
+    private byte[] frame(byte[] body, boolean batch, int encodedLength, PayloadHeader basePointer, Envelope envelope, boolean recorded) {
+        PayloadHeader header = PayloadHeader.plain(body.length);
+        byte[] written = body;
+        if (compression != Compression.NONE && body.length >= compressionThresholdBytes) {
+            byte[] compressed = compression.compress(body);
+            // not worth it if it does not shrink the payload
+            if (compressed.length < body.length) {
+                header = PayloadHeader.compressed(compression, body.length);
+                written = compressed;
+            }
+        }
+        header.batch(batch);
+        if (basePointer != null) {
+            header.delta(basePointer, encodedLength);
+        }
+        header.envelope(envelope);
+        if (recorded) {
+            compressionStats.record(encodedLength, written.length, header.isCompressed());
+        }
+        return header.write(written);
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+}
@@ -0,0 +1,146 @@
+package observo.payload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest payload received for an observable in a memory-mapped file, so that a restarted process
+ * can hand it to its observers without reading it from zookeeper, as long as it is still current:
+ * <pre>
+ * magic (4 bytes) | version (4 bytes) | mzxid (8 bytes) | flags (1 byte) | body length (4 bytes) | crc32 (4 bytes) | body
+ * </pre>
+ * Saving only copies the payload into the mapped pages, which the operating system writes back in its own time;
+ * a snapshot torn by a crash fails its checksum and is ignored.
+ */
+public class SnapshotStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x4F425353;
+    private static final int HEADER_LENGTH = 25;
+    private static final int FLAG_BATCH = 1;
+    private static final int PAGE_SIZE = 4096;
+
+    private final Path file;
+    private MappedByteBuffer mapped;
+
+    public SnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the saved snapshot, or null if there is none or it is corrupted
+     */
+    public synchronized Snapshot load() {
+        try {
+            if (!Files.exists(file) || Files.size(file) < HEADER_LENGTH) {
+                return null;
+            }
+            MappedByteBuffer buffer = map(Files.size(file));
+            if (buffer.getInt(0) != MAGIC) {
+                return null;
+            }
+            int version = buffer.getInt(4);
+            long mzxid = buffer.getLong(8);
+            boolean batch = (buffer.get(16) & FLAG_BATCH) != 0;
+            int length = buffer.getInt(17);
+            int checksum = buffer.getInt(21);
+            if (length < 0 || HEADER_LENGTH + length > buffer.capacity()) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            buffer.position(HEADER_LENGTH);
+            buffer.get(body);
+            if (checksum(body) != checksum) {
+                LOGGER.warn("ignoring the corrupted snapshot {}", file);
+                return null;
+            }
+            return new Snapshot(version, mzxid, new Payload(body, batch));
+
+        } catch (IOException e) {
+            LOGGER.warn("could not load the snapshot {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @param version version of the observable node the payload was read from
+     * @param mzxid zxid of the write of the payload, telling it apart from a payload of the same version of a recreated node
+     */
+    public synchronized void save(int version, long mzxid, Payload payload) {
+        byte[] body = payload.getBody();
+        try {
+            MappedByteBuffer buffer = map(HEADER_LENGTH + body.length);
+            // the magic is written last, so that a snapshot being written is never loaded
+            buffer.putInt(0, 0);
+            buffer.position(HEADER_LENGTH);
+            buffer.put(body);
+            buffer.putInt(4, version)
+                    .putLong(8, mzxid)
+                    .put(16, (byte) (payload.isBatch() ? FLAG_BATCH : 0))
+                    .putInt(17, body.length)
+                    .putInt(21, checksum(body))
+                    .putInt(0, MAGIC);
+
+        } catch (IOException e) {
+            LOGGER.warn("could not save the snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * @return a mapping of the file at least the given length, growing the file by whole pages if needed
+     */
+    private MappedByteBuffer map(long length) throws IOException {
+        if (mapped != null && mapped.capacity() >= length) {
+            return mapped;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), (length + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE);
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return mapped;
+        }
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+    public static class Snapshot {
+
+        private final int version;
+        private final long mzxid;
+        private final Payload payload;
+
+        private Snapshot(int version, long mzxid, Payload payload) {
+            this.version = version;
+            this.mzxid = mzxid;
+            this.payload = payload;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public long getMzxid() {
+            return mzxid;
+        }
+
+        public Payload getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package observo.payload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the notifications of an observable in a local file, each entry holding the encoded items
+ * of a notification until it has been published:
+ * <pre>
+ * record length (4 bytes) | crc32 (4 bytes) | record
+ * APPEND (1 byte) | sequence (8 bytes) | notification id (16 bytes) | flags (1 byte) | item count (4 bytes) | (item length (4 bytes) | item)*
+ * COMMIT (1 byte) | sequence (8 bytes)
+ * </pre>
+ * Records are written by a single thread, which syncs all the records queued meanwhile with a single fsync before
+ * completing their appends, so that the cost of a sync is shared by every notification of a burst.
+ * A batch that could not be written is cut off the file, so that the next records follow the last valid one,
+ * and its entries are dropped; if the file cannot be cut, every later append fails.
+ * Commits are synced along with the next records: a commit lost in a crash only gets its entry published again.
+ * On opening, the entries without a commit are loaded back, up to the first torn record.
+ * The file is truncated once every entry has been committed, and rewritten with the entries left when it grows too large.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final byte APPEND = 0;
+    private static final byte COMMIT = 1;
+    private static final byte FLAG_BATCH = 1;
+    private static final int FRAME_HEADER_LENGTH = 8;
+    private static final long TRUNCATE_BYTES = 1 << 20;
+    private static final long COMPACTION_BYTES = 64 << 20;
+
+    private final Path file;
+    private final Object lock = new Object();
+    private final List<Queued> queue = new ArrayList<>();
+    private final NavigableMap<Long, Entry> pending = new TreeMap<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private long nextSequence;
+    private boolean closed = false;
+    private IOException failure;
+
+    /**
+     * Opens the log, loading back the entries left without a commit.
+     */
+    public WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        long validLength = Files.exists(file) ? load(Files.readAllBytes(file)) : 0;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // a torn record is dropped, so that the next records follow the last valid one
+        channel.truncate(validLength);
+        channel.position(validLength);
+        if (!pending.isEmpty()) {
+            LOGGER.info("{} notifications left to publish in {}", pending.size(), file);
+        }
+        this.writer = new Thread(this::writeLoop, "observo-wal-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the entry, in the order of the calls.
+     * @return the sequence of the entry, completed once synced to disk
+     */
+    public CompletableFuture<Long> append(UUID notificationId, boolean batch, List<byte[]> items) {
+        CompletableFuture<Long> synced = new CompletableFuture<>();
+        synchronized (lock) {
+            if (closed) {
+                synced.completeExceptionally(new IOException("write-ahead log " + file + " is closed"));
+                return synced;
+            }
+            if (failure != null) {
+                synced.completeExceptionally(failure);
+                return synced;
+            }
+            Entry entry = new Entry(nextSequence++, notificationId, batch, items);
+            pending.put(entry.sequence, entry);
+            queue.add(new Queued(entry, entry.sequence, synced));
+            lock.notifyAll();
+        }
+        return synced;
+    }
+
+    /**
+     * Marks the entry as published, so that it is not published again.
+     */
+    public void commit(long sequence) {
+        synchronized (lock) {
+            if (pending.remove(sequence) != null && !closed) {
+                queue.add(new Queued(null, sequence, null));
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the entries not committed yet, in the order they were appended
+     */
+    public List<Entry> getPending() {
+        synchronized (lock) {
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    /**
+     * Writes the records queued so far and stops the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<Queued> batch = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                batch.addAll(queue);
+                queue.clear();
+            }
+            if (write(batch)) {
+                try {
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    LOGGER.warn("could not compact the write-ahead log {}: {}", file, e.toString());
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return whether the batch has been written and synced
+     */
+    private boolean write(List<Queued> batch) {
+        IOException failed;
+        synchronized (lock) {
+            failed = failure;
+        }
+        long start = -1;
+        if (failed == null) {
+            try {
+                start = channel.position();
+                ByteBuffer[] records = new ByteBuffer[batch.size()];
+                for (int i = 0; i < records.length; i++) {
+                    records[i] = frame(batch.get(i));
+                }
+                while (records[records.length - 1].hasRemaining()) {
+                    channel.write(records);
+                }
+                channel.force(false);
+                for (Queued queued : batch) {
+                    if (queued.synced != null) {
+                        queued.synced.complete(queued.sequence);
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                LOGGER.error("could not write to the write-ahead log {}: {}", file, e.toString());
+                failed = e;
+            }
+            if (start >= 0) {
+                try {
+                    // a torn record would hide every record written after it on loading
+                    channel.truncate(start);
+                    channel.position(start);
+                } catch (IOException e) {
+                    LOGGER.error("could not cut the failed records off the write-ahead log {}; appends will fail: {}", file, e.toString());
+                    synchronized (lock) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        synchronized (lock) {
+            for (Queued queued : batch) {
+                if (queued.entry != null) {
+                    pending.remove(queued.sequence);
+                }
+            }
+        }
+        for (Queued queued : batch) {
+            if (queued.synced != null) {
+                queued.synced.completeExceptionally(failed);
+            }
+        }
+        return false;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        List<Entry> left;
+        synchronized (lock) {
+            long size = channel.size();
+            if (!queue.isEmpty() || size < TRUNCATE_BYTES || (!pending.isEmpty() && size < COMPACTION_BYTES)) {
+                return;
+            }
+            left = new ArrayList<>(pending.values());
+        }
+        if (left.isEmpty()) {
+            channel.truncate(0);
+            channel.position(0);
+            return;
+        }
+        // appends go on being queued meanwhile, to be written to the new file
+        Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entry entry : left) {
+                ByteBuffer record = frame(new Queued(entry, entry.sequence, null));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        LOGGER.info("write-ahead log {} compacted to {} notifications", file, left.size());
+    }
+
+    private static ByteBuffer frame(Queued queued) {
+        int length = 1 + 8;
+        if (queued.entry != null) {
+            length += 16 + 1 + 4;
+            for (byte[] item : queued.entry.items) {
+                length += 4 + item.length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_LENGTH + length);
+        buffer.putInt(length).putInt(0);
+        if (queued.entry == null) {
+            buffer.put(COMMIT).putLong(queued.sequence);
+        } else {
+            Entry entry = queued.entry;
+            buffer.put(APPEND)
+                    .putLong(entry.sequence)
+                    .putLong(entry.notificationId.getMostSignificantBits())
+                    .putLong(entry.notificationId.getLeastSignificantBits())
+                    .put(entry.batch ? FLAG_BATCH : 0)
+                    .putInt(entry.items.size());
+            for (byte[] item : entry.items) {
+                buffer.putInt(item.length).put(item);
+            }
+        }
+        buffer.putInt(4, checksum(buffer.array(), FRAME_HEADER_LENGTH, length));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the length of the valid records
+     */
+    private long load(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long validLength = 0;
+        while (buffer.remaining() >= FRAME_HEADER_LENGTH) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 9 || length > buffer.remaining() || checksum(data, buffer.position(), length) != checksum) {
+                LOGGER.warn("ignoring the torn end of the write-ahead log {} at offset {}", file, validLength);
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(data, buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            byte type = record.get();
+            long sequence = record.getLong();
+            if (type == APPEND) {
+                UUID notificationId = new UUID(record.getLong(), record.getLong());
+                boolean batch = (record.get() & FLAG_BATCH) != 0;
+                int count = record.getInt();
+                List<byte[]> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] item = new byte[record.getInt()];
+                    record.get(item);
+                    items.add(item);
+                }
+                pending.put(sequence, new Entry(sequence, notificationId, batch, items));
+            } else {
+                pending.remove(sequence);
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+
+    private static int checksum(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A journaled notification.
+     */
+    public static final class Entry {
+
+        private final long sequence;
+        private final UUID notificationId;
+        private final boolean batch;
+        private final List<byte[]> items;
+
+        private Entry(long sequence, UUID notificationId, boolean batch, List<byte[]> items) {
+            this.sequence = sequence;
+            this.notificationId = notificationId;
+            this.batch = batch;
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public UUID getNotificationId() {
+            return notificationId;
+        }
+
+        public boolean isBatch() {
+            return batch;
+        }
+
+        public List<byte[]> getItems() {
+            return items;
+        }
+    }
+
+    private static final class Queued {
+
+        private final Entry entry;
+        private final long sequence;
+        private final CompletableFuture<Long> synced;
+
+        /**
+         * @param entry the entry to append, null to commit the sequence
+         */
+        private Queued(Entry entry, long sequence, CompletableFuture<Long> synced) {
+            this.entry = entry;
+            this.sequence = sequence;
+            this.synced = synced;
+        }
+    }
+}
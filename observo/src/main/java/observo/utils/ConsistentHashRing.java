@@ -0,0 +1,65 @@
+package observo.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes by consistent hashing: every node owns many points of a ring of 64 bit hashes,
+ * and a key belongs to the node owning the first point following the hash of the key.
+ * The points of a node only depend on its name, so adding a node only moves to it the keys it takes over,
+ * about a fraction 1 / (nodes + 1) of them, while removing one only moves its own keys.
+ */
+public class ConsistentHashRing<T> {
+
+    private final Map<String, T> nodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param nodes nodes by name, the name identifying a node from one ring to another
+     * @param pointsPerNode points of each node on the ring; the more, the more evenly the keys are spread
+     */
+    public ConsistentHashRing(Map<String, T> nodes, int pointsPerNode) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("a ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableMap(new LinkedHashMap<>(nodes));
+        for (String name : nodes.keySet()) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                // on the rare collision, the point goes to the greatest name whatever the order of the nodes
+                ring.merge(hash(name + "#" + i), name, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+        }
+    }
+
+    public T nodeFor(String key) {
+        Map.Entry<Long, String> point = ring.ceilingEntry(hash(key));
+        return nodes.get(point != null ? point.getValue() : ring.firstEntry().getValue());
+    }
+
+    public Map<String, T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the first 64 bits of the MD5 digest, spread evenly whatever the similarity of the keys, and stable across processes
+     */
+    static long hash(String key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is required of every java platform", e);
+        }
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = hash << 8 | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,62 @@
+package observo.utils;
+
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bridges curator background operations to {@link CompletableFuture}s.
+ */
+public class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Starts a curator operation in the background, given the callback to pass to inBackground.
+     */
+    @FunctionalInterface
+    public interface BackgroundOperation {
+        void start(BackgroundCallback callback) throws Exception;
+    }
+
+    /**
+     * @return the event of the operation, completed on the zookeeper event thread;
+     * a result code other than OK completes it exceptionally with the matching {@link KeeperException}
+     */
+    public static CompletableFuture<CuratorEvent> background(BackgroundOperation operation) {
+        CompletableFuture<CuratorEvent> future = new CompletableFuture<>();
+        try {
+            operation.start((client, event) -> {
+                if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                    future.complete(event);
+                } else {
+                    future.completeExceptionally(KeeperException.create(KeeperException.Code.get(event.getResultCode()), event.getPath()));
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * @return the exception wrapped by the future composition, if any
+     */
+    public static Throwable unwrap(Throwable ex) {
+        while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+}
@@ -0,0 +1,54 @@
+package observo.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by all the observables unless others are configured, running daemon threads released when idle.
+ * Two have a constant maximum number of threads: one runs the observers' dispatch lanes, each lane taking at most one
+ * of its threads at a time, the other the blocking steps of publishing. The last one waits for the locks, with a
+ * thread per waiting observable, so that the waiters never take the threads the lock holders need to publish.
+ */
+public class SharedDispatcher {
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService INSTANCE = create("observo-dispatcher-");
+    private static final ExecutorService PUBLISHER = create("observo-publisher-");
+    private static final ExecutorService LOCK_WAITER = create("observo-lock-waiter-", 0, Integer.MAX_VALUE, new SynchronousQueue<>());
+
+    private SharedDispatcher() {
+    }
+
+    public static ExecutorService get() {
+        return INSTANCE;
+    }
+
+    public static ExecutorService getPublisher() {
+        return PUBLISHER;
+    }
+
+    public static ExecutorService getLockWaiter() {
+        return LOCK_WAITER;
+    }
+
+    private static ExecutorService create(String threadPrefix) {
+        ThreadPoolExecutor executor = create(threadPrefix, THREADS, THREADS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadPoolExecutor create(String threadPrefix, int coreThreads, int maxThreads, BlockingQueue<Runnable> queue) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(coreThreads, maxThreads, 60, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
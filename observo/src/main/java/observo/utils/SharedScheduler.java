@@ -0,0 +1,33 @@
+package observo.utils;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler shared by all the observables unless one is configured: it runs the notification timeouts
+ * and the completion of the notifications, with a constant number of daemon threads.
+ */
+public class SharedScheduler {
+
+    private static final ScheduledExecutorService INSTANCE = create();
+
+    private SharedScheduler() {
+    }
+
+    public static ScheduledExecutorService get() {
+        return INSTANCE;
+    }
+
+    private static ScheduledExecutorService create() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "observo-scheduler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // timeouts are cancelled on every successful notification; do not let them pile up in the queue
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,148 @@
+package observo;
+
+import observo.conf.AckPolicy;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class AckTrackerTest {
+
+    private final AckTracker ackTracker = new AckTracker(Arrays.asList("observer1", "observer2"));
+
+    @Test
+    public void completesWhenAllObserversHaveAcknowledgedTheVersion() {
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 3);
+        assertThat(ackTracker.isComplete(), is(false));
+        ackTracker.ack("observer2", 3);
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void acknowledgementsOfOlderVersionsAreNotEnough() {
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 2);
+        ackTracker.ack("observer2", 2);
+        assertThat(ackTracker.isComplete(), is(false));
+    }
+
+    @Test
+    public void acknowledgementsOfNewerVersionsAreEnough() {
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 4);
+        ackTracker.ack("observer2", 5);
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void acknowledgementsReceivedBeforeTheVersionIsKnownAreAccounted() {
+        ackTracker.ack("observer1", 3);
+        ackTracker.ack("observer2", 3);
+        assertThat(ackTracker.isComplete(), is(false));
+        ackTracker.setVersion(3);
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void observersMissingFromTheAggregatedAcknowledgementsAreNotWaitedFor() {
+        ackTracker.setVersion(3);
+        ackTracker.ackAll(Collections.singletonMap("observer1", 3L), Collections.singleton("observer1"));
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void registeredObserversMissingFromTheAggregatedAcknowledgementsAreWaitedFor() {
+        ackTracker.setVersion(3);
+        ackTracker.ackAll(Collections.singletonMap("observer1", 3L), Arrays.asList("observer1", "observer2"));
+        assertThat(ackTracker.isComplete(), is(false));
+        ackTracker.ackAll(Collections.singletonMap("observer2", 3L), Arrays.asList("observer1", "observer2"));
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void removedObserversAreNotWaitedFor() {
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 3);
+        ackTracker.remove("observer2");
+        assertThat(ackTracker.isComplete(), is(true));
+    }
+
+    @Test
+    public void runsTheCompletionTaskOnceAllObserversHaveAcknowledged() {
+        AtomicBoolean completed = new AtomicBoolean(false);
+        ackTracker.whenComplete(() -> completed.set(true));
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 3);
+        assertThat(completed.get(), is(false));
+        ackTracker.ack("observer2", 3);
+        assertThat(completed.get(), is(true));
+    }
+
+    @Test
+    public void doesNotRunTheCompletionTaskWhenCancelled() {
+        AtomicBoolean completed = new AtomicBoolean(false);
+        ackTracker.whenComplete(() -> completed.set(true));
+        ackTracker.cancel();
+        ackTracker.setVersion(3);
+        ackTracker.ack("observer1", 3);
+        ackTracker.ack("observer2", 3);
+        assertThat(ackTracker.isComplete(), is(true));
+        assertThat(completed.get(), is(false));
+    }
+
+    @Test
+    public void completesOnceTheRequiredNumberOfObserversHaveAcknowledged() {
+        AckTracker quorum = new AckTracker(Arrays.asList("observer1", "observer2", "observer3"), AckPolicy.atLeast(2));
+        quorum.setVersion(3);
+        quorum.ack("observer1", 3);
+        assertThat(quorum.isComplete(), is(false));
+        quorum.ack("observer3", 3);
+        assertThat(quorum.isComplete(), is(true));
+    }
+
+    @Test
+    public void requiresNoMoreAcknowledgementsThanTheRemainingObservers() {
+        AckTracker quorum = new AckTracker(Arrays.asList("observer1", "observer2"), AckPolicy.atLeast(2));
+        quorum.setVersion(3);
+        quorum.ack("observer1", 3);
+        quorum.remove("observer2");
+        assertThat(quorum.isComplete(), is(true));
+    }
+
+    @Test
+    public void completesOnTheFirstAcknowledgement() {
+        AckTracker first = new AckTracker(Arrays.asList("observer1", "observer2"), AckPolicy.first());
+        first.setVersion(3);
+        first.ack("observer2", 3);
+        assertThat(first.isComplete(), is(true));
+    }
+
+    @Test
+    public void roundsTheRequiredFractionUp() {
+        assertThat(AckPolicy.fraction(0.5).requiredAcks(3), is(2));
+        assertThat(AckPolicy.fraction(0.3).requiredAcks(10), is(3));
+        assertThat(AckPolicy.fraction(1).requiredAcks(4), is(4));
+    }
+
+    @Test
+    public void reportsTheAcknowledgingObserversAndTheStragglers() {
+        AckTracker tracker = new AckTracker(Arrays.asList("observer1", "observer2", "observer3"), AckPolicy.first());
+        tracker.start();
+        tracker.setVersion(3);
+        tracker.ack("observer1", 3);
+        tracker.ack("observer2", 2);
+        tracker.remove("observer3");
+
+        AckReport report = tracker.report();
+        assertThat(report.getVersion(), is(3L));
+        assertThat(report.getAckTimesMs().keySet(), is(Collections.singleton("observer1")));
+        assertThat(report.getStragglers(), is(Collections.singleton("observer2")));
+        assertThat(report.getDeparted(), is(Collections.singleton("observer3")));
+    }
+
+}
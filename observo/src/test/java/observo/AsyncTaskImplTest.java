@@ -3,6 +3,10 @@ package observo;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -10,6 +14,7 @@ import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.fail;
 
 public class AsyncTaskImplTest {
@@ -72,4 +77,58 @@ public class AsyncTaskImplTest {
         asyncTask.join(100, TimeUnit.MILLISECONDS);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void runsAllTheCompletionTasksInOrder() {
+        List<Integer> completed = new ArrayList<>();
+        asyncTask.whenComplete(() -> completed.add(1))
+                .whenComplete(() -> completed.add(2));
+        asyncTask.completeSuccessfully();
+        asyncTask.whenComplete(() -> completed.add(3));
+        assertThat(successfullyCompleted, is(true));
+        assertThat(completed, is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void canBeComposedAsACompletionStage() throws ExecutionException, InterruptedException, TimeoutException {
+        AsyncTaskImpl next = new AsyncTaskImpl();
+        CompletableFuture<String> composed = asyncTask.thenCompose(ignored -> next)
+                .thenApply(ignored -> "done")
+                .toCompletableFuture();
+        asyncTask.completeSuccessfully();
+        next.completeSuccessfully();
+        assertThat(composed.get(100, TimeUnit.MILLISECONDS), is("done"));
+    }
+
+    @Test
+    public void completingTheCompletableFutureDoesNotCompleteTheTask() {
+        asyncTask.toCompletableFuture().complete(null);
+        assertThat(asyncTask.toCompletableFuture().isDone(), is(false));
+        assertThat(successfullyCompleted, is(false));
+    }
+
+    @Test
+    public void allOfCompletesOnceAllTheTasksHaveCompleted() throws ExecutionException, InterruptedException, TimeoutException {
+        AsyncTaskImpl other = new AsyncTaskImpl();
+        AsyncTask all = AsyncTask.allOf(asyncTask, other);
+        asyncTask.completeSuccessfully();
+        assertThat(all.toCompletableFuture().isDone(), is(false));
+        other.completeSuccessfully();
+        all.join(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void allOfCompletesExceptionallyIfAnyTaskDoes() throws InterruptedException, TimeoutException {
+        AsyncTaskImpl other = new AsyncTaskImpl();
+        AsyncTask all = AsyncTask.allOf(asyncTask, other);
+        asyncTask.completeSuccessfully();
+        other.completeExceptionally(TEST_EXCEPTION);
+        try {
+            all.join(100, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause(), is(TEST_EXCEPTION));
+        }
+        assertThat(errorCompletedException, is(nullValue()));
+    }
+
+}
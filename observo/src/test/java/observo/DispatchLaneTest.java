@@ -0,0 +1,135 @@
+package observo;
+
+import observo.codec.Codec;
+import observo.conf.OverflowPolicy;
+import observo.metrics.InMemoryMetricsRegistry;
+import observo.metrics.Metrics;
+import observo.payload.Payload;
+import observo.payload.PayloadReader;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class DispatchLaneTest {
+
+    private static final Codec<String> CODEC = new Codec<String>() {
+        @Override
+        public byte[] encode(String data) {
+            return data.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final List<String> updates = new ArrayList<>();
+    private final List<Long> acks = new ArrayList<>();
+    private final Deque<Runnable> executor = new ArrayDeque<>();
+
+    @Test
+    public void deliversInOrderAndAcknowledgesAfterTheUpdate() throws Exception {
+        DispatchLane<String> lane = lane(10, OverflowPolicy.BLOCK);
+        lane.submit(notification("a"), 1);
+        lane.submit(notification("b"), 2);
+        assertThat(lane.getQueueDepth(), is(2));
+        assertThat(updates.isEmpty(), is(true));
+
+        runExecutor();
+        assertThat(updates, is(Arrays.asList("a", "b")));
+        assertThat(acks, is(Arrays.asList(1L, 2L)));
+        assertThat(lane.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void dropOldestDiscardsTheOldestNotificationButKeepsItsAcknowledgement() throws Exception {
+        DispatchLane<String> lane = lane(2, OverflowPolicy.DROP_OLDEST);
+        lane.submit(notification("a"), 1);
+        lane.submit(notification("b"), Acknowledgement.NONE);
+        lane.submit(notification("c"), Acknowledgement.NONE);
+
+        runExecutor();
+        assertThat(updates, is(Arrays.asList("b", "c")));
+        assertThat(acks, is(Arrays.asList(1L)));
+        assertThat(lane.getDropped(), is(1L));
+    }
+
+    @Test
+    public void coalesceLatestKeepsOnlyTheLatestNotification() throws Exception {
+        DispatchLane<String> lane = lane(2, OverflowPolicy.COALESCE_LATEST);
+        lane.submit(notification("a"), 1);
+        lane.submit(notification("b"), 2);
+        lane.submit(null, 3);
+
+        runExecutor();
+        assertThat(updates, is(Arrays.asList("b")));
+        assertThat(acks, is(Arrays.asList(3L)));
+        assertThat(lane.getDropped(), is(2L));
+    }
+
+    @Test
+    public void blockHoldsTheNotificationsBackWithoutBlockingTheSubmitter() throws Exception {
+        DispatchLane<String> lane = lane(1, OverflowPolicy.BLOCK);
+        CompletableFuture<Void> first = lane.submit(notification("a"), 1);
+        CompletableFuture<Void> second = lane.submit(notification("b"), 2);
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(false));
+        assertThat(lane.getQueueDepth(), is(2));
+
+        runExecutor();
+        assertThat(second.isDone(), is(true));
+        assertThat(updates, is(Arrays.asList("a", "b")));
+        assertThat(acks, is(Arrays.asList(1L, 2L)));
+        assertThat(lane.getDropped(), is(0L));
+    }
+
+    @Test
+    public void droppedNotificationsAreCounted() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry(false);
+        DispatchLane<String> lane = new DispatchLane<>(updates::add, acks::add, executor::add, 1, OverflowPolicy.DROP_OLDEST,
+                new PipelineMetrics(registry, "lane"));
+        lane.submit(notification("a"), 1);
+        lane.submit(notification("b"), 2);
+        lane.submit(notification("c"), 3);
+
+        assertThat(registry.getCount("lane", Metrics.DROPPED), is(2L));
+    }
+
+    @Test
+    public void closedLaneDiscardsTheNotifications() throws Exception {
+        DispatchLane<String> lane = lane(10, OverflowPolicy.BLOCK);
+        lane.submit(notification("a"), 1);
+        lane.close();
+        lane.submit(notification("b"), 2);
+
+        runExecutor();
+        assertThat(updates.isEmpty(), is(true));
+        assertThat(acks.isEmpty(), is(true));
+    }
+
+    private DispatchLane<String> lane(int capacity, OverflowPolicy overflowPolicy) {
+        return new DispatchLane<>(updates::add, acks::add, executor::add, capacity, overflowPolicy);
+    }
+
+    private void runExecutor() {
+        while (!executor.isEmpty()) {
+            executor.poll().run();
+        }
+    }
+
+    private static Notification<String> notification(String data) throws Exception {
+        Payload payload = new PayloadReader().read(data.getBytes(StandardCharsets.UTF_8)).get();
+        return new Notification<>(payload, CODEC);
+    }
+
+}
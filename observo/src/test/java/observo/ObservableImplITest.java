@@ -1,26 +1,64 @@
 package observo;
 
+import observo.codec.BinaryCodec;
+import observo.codec.Codec;
+import observo.conf.AckPolicy;
+import observo.conf.AckMode;
 import observo.conf.ObservoConf;
+import observo.conf.PublishMode;
+import observo.conf.WatchMode;
 import observo.conf.ZookeeperConf;
+import observo.metrics.InMemoryMetricsRegistry;
+import observo.metrics.Metrics;
+import observo.payload.Compression;
+import observo.payload.Envelope;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
+import org.apache.curator.retry.RetryNTimes;
 import org.apache.curator.test.TestingServer;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Watcher;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import static java.util.Collections.emptySet;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class ObservableImplITest {
 
@@ -34,22 +72,29 @@ public class ObservableImplITest {
 
     private static TestingServer zkServer;
     private static Observable<News> newsFeeds;
+    private static ObservableFactory factory;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     private TestCompleteTask completeTask = new TestCompleteTask();
     private TestErrorTask errorTask = new TestErrorTask();
+    private final List<Closeable> opened = new ArrayList<>();
 
     @Before
     public void setUp() throws Exception {
         zkServer = new TestingServer();
-        ZookeeperConf zookeeperConf = new ZookeeperConf(zkServer.getConnectString(), CONNECTION_TIMEOUT_MS, RETRY_TIMES, RETRY_MS_SLEEP);
-        ObservoConf observoConf = new ObservoConf(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS);
-        ObservableFactory factory = new ObservableFactory(zookeeperConf, observoConf, NAME_SPACE_SUFFIX);
+        factory = new ObservableFactory(zookeeperConf(), new ObservoConf(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS), NAME_SPACE_SUFFIX);
         newsFeeds = factory.createObservable("news", News.class);
     }
 
     @After
     public void tearDown() throws IOException {
         newsFeeds.unregisterAllObservers();
+        for (Closeable closeable : opened) {
+            closeable.close();
+        }
+        factory.close();
         zkServer.stop();
     }
 
@@ -121,6 +166,59 @@ public class ObservableImplITest {
         assertThat(observer.getData(), is(TEST_NEWS));
     }
 
+    @Test
+    public void observersOfACrashedProcessShouldNoLongerBeWaitedFor() throws Exception {
+        Observable<News> liveFeeds = observable("live", News.class, new ObservoConf(5000, LOCK_TIMEOUT_MS));
+        TestObserver<News> observer = new TestObserver<>();
+        liveFeeds.registerObserver(observer);
+        CuratorFramework otherProcess = otherProcess();
+        otherProcessObserver(otherProcess, "live", "crashed");
+
+        AsyncTask notification = liveFeeds.notifyObserversAsync(TEST_NEWS);
+        assertThat(observer.awaitForNotification(), is(true));
+
+        // its session ends while the notification is waiting for it
+        otherProcess.close();
+        notification.join(1000, TimeUnit.MILLISECONDS);
+        liveFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void ackPoliciesShouldReportTheStragglers() throws Exception {
+        TestObserver<News> observer = new TestObserver<>();
+        newsFeeds.registerObserver(observer);
+
+        String stuck = otherProcessObserver(otherProcess(), "news", "stuck");
+
+        AsyncTask firstAck = newsFeeds.notifyObserversAsync(TEST_NEWS, AckPolicy.first());
+        firstAck.join(1000, TimeUnit.MILLISECONDS);
+        assertThat(firstAck.getAckReport().getAckTimesMs().size(), is(1));
+        assertThat(firstAck.getAckReport().getStragglers(), is(Collections.singleton(stuck)));
+
+        AsyncTask allAcks = newsFeeds.notifyObserversAsync(TEST_NEWS, AckPolicy.all());
+        try {
+            allAcks.join(1000, TimeUnit.MILLISECONDS);
+            fail("the notification should have timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(NotificationTimeoutException.class));
+            AckReport ackReport = ((NotificationTimeoutException) e.getCause()).getAckReport();
+            assertThat(ackReport.getAckTimesMs().size(), is(1));
+            assertThat(ackReport.getStragglers(), is(Collections.singleton(stuck)));
+        }
+    }
+
+    @Test
+    public void localObserversShareASingleReadAndDecode() throws InterruptedException, ExecutionException, TimeoutException {
+        TestObserver<News> observer1 = new TestObserver<>();
+        TestObserver<News> observer2 = new TestObserver<>();
+        newsFeeds.registerObserver(observer1);
+        newsFeeds.registerObserver(observer2);
+        newsFeeds.notifyObservers(TEST_NEWS);
+        assertThat(observer1.isNotified(), is(true));
+        assertThat(observer2.isNotified(), is(true));
+        assertThat(observer1.getData(), is(sameInstance(observer2.getData())));
+    }
+
     @Test
     public void notifyObserversShouldNotifyMultipleNews() throws InterruptedException, TimeoutException, ExecutionException {
         TestObserver<News> observer = new TestObserver<>();
@@ -194,7 +292,679 @@ public class ObservableImplITest {
 
         assertThat(completeTask.waitUntilCompletion(), is(false));
         assertThat(errorTask.waitUntilCompletion(), is(true));
-        assertThat(errorTask.getThrowable().getMessage(), is("KeeperErrorCode = ConnectionLoss"));
+        assertThat(errorTask.getThrowable(), instanceOf(KeeperException.ConnectionLossException.class));
+    }
+
+    @Test
+    public void notifyObserversBatchShouldNotifyAllTheItems() throws InterruptedException, TimeoutException, ExecutionException {
+        List<List<News>> batches = new CopyOnWriteArrayList<>();
+        newsFeeds.registerObserver((BatchObserver<News>) batches::add);
+        TestObserver<News> observer = new TestObserver<>();
+        newsFeeds.registerObserver(observer);
+
+        News news1 = new News("news1", "content");
+        News news2 = new News("news2", "content");
+        newsFeeds.notifyObserversBatch(Arrays.asList(news1, news2));
+
+        assertThat(batches, is(Collections.singletonList(Arrays.asList(news1, news2))));
+        assertThat(observer.getData(), is(news2));
+    }
+
+    @Test
+    public void notifyObserversShouldNotifyDataEncodedWithACustomCodec() throws InterruptedException, TimeoutException, ExecutionException {
+        Observable<String> headlines = factory.createObservable("headlines", BinaryCodec.strings());
+        TestObserver<String> observer = new TestObserver<>();
+        headlines.registerObserver(observer);
+        headlines.notifyObservers("headline");
+        assertThat(observer.getData(), is("headline"));
+        headlines.unregisterAllObservers();
+    }
+
+    @Test
+    public void rawAndLazyObserversShouldReceiveTheItemsUndecoded() throws InterruptedException, TimeoutException, ExecutionException, IOException {
+        Codec<String> codec = BinaryCodec.strings();
+        Observable<String> headlines = factory.createObservable("rawHeadlines", codec);
+        List<ByteBuffer> raw = new CopyOnWriteArrayList<>();
+        headlines.registerRawObserver(raw::add);
+        List<LazyData<String>> lazy = new CopyOnWriteArrayList<>();
+        headlines.registerLazyObserver(lazy::add);
+
+        headlines.notifyObserversBatch(Arrays.asList("headline1", "headline2"));
+
+        assertThat(raw.size(), is(2));
+        assertThat(raw.get(0).isReadOnly(), is(true));
+        assertThat(bytesOf(raw.get(1)), is(codec.encode("headline2")));
+        assertThat(lazy.size(), is(2));
+        assertThat(lazy.get(0).get(), is("headline1"));
+        assertThat(bytesOf(lazy.get(1).getBytes()), is(codec.encode("headline2")));
+        headlines.unregisterAllObservers();
+    }
+
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void notifyObserversShouldNotifyCompressedData() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .compression(Compression.DEFLATE, 0)
+                .build();
+        Observable<News> compressedFeeds = observable("compressed", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        compressedFeeds.registerObserver(observer);
+
+        compressedFeeds.notifyObservers(TEST_NEWS);
+
+        assertThat(observer.getData(), is(TEST_NEWS));
+        assertThat(compressedFeeds.getCompressionStats().getCompressedPayloads(), is(1L));
+        compressedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void notifyObserversShouldNotifyDataLargerThanTheNodeLimitInChunks() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(5000, LOCK_TIMEOUT_MS)
+                .chunking(256 * 1024)
+                .build();
+        Observable<byte[]> snapshots = observable("snapshots", byte[].class, observoConf);
+        TestObserver<byte[]> observer = new TestObserver<>();
+        snapshots.registerObserver(observer);
+
+        byte[] snapshot = new byte[3 * 1024 * 1024];
+        new Random(0).nextBytes(snapshot);
+        snapshots.notifyObservers(snapshot);
+        assertThat(observer.getData(), is(snapshot));
+
+        byte[] smallSnapshot = {1, 2, 3};
+        snapshots.notifyObservers(smallSnapshot);
+        assertThat(observer.getData(), is(smallSnapshot));
+        snapshots.unregisterAllObservers();
+    }
+
+    @Test
+    public void deltaEncodingShouldWriteOnlyTheChanges() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf deltaConf = ObservoConf.builder(5000, LOCK_TIMEOUT_MS)
+                .deltaEncoding(1024, 0.5)
+                .build();
+        Observable<byte[]> publisher = observable("states", byte[].class, deltaConf);
+        // observers read the deltas whatever their own configuration
+        Observable<byte[]> states = observable("states", byte[].class, new ObservoConf(5000, LOCK_TIMEOUT_MS));
+        TestObserver<byte[]> observer = new TestObserver<>();
+        states.registerObserver(observer);
+
+        byte[] state = new byte[200 * 1024];
+        new Random(0).nextBytes(state);
+        for (int i = 0; i < 5; i++) {
+            state = state.clone();
+            state[i * 1000]++;
+            publisher.notifyObservers(state);
+            assertThat(observer.getData(), is(state));
+        }
+
+        // the statistics account for the notifications only, whose changes are a few bytes each, not for the base
+        assertThat(publisher.getCompressionStats().getPayloads(), is(5L));
+        assertThat(publisher.getCompressionStats().getWrittenBytes(), is(lessThan(1024L)));
+        states.unregisterAllObservers();
+    }
+
+    @Test
+    public void deltaEncodingShouldRebaseWhenAnotherPublisherTrimmedTheBase() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf deltaConf = ObservoConf.builder(2000, LOCK_TIMEOUT_MS)
+                .deltaEncoding(1024, 0.5)
+                .build();
+        Observable<byte[]> publisher = observable("sharedStates", byte[].class, deltaConf);
+        Observable<byte[]> otherPublisher = observable("sharedStates", byte[].class, deltaConf);
+        TestObserver<byte[]> observer = new TestObserver<>();
+        publisher.registerObserver(observer);
+
+        Random random = new Random(0);
+        byte[] state = new byte[10 * 1024];
+        random.nextBytes(state);
+        publisher.notifyObservers(state);
+        // every notification of the other publisher stores a new base, trimming the first one
+        for (int i = 0; i < 3; i++) {
+            byte[] otherState = new byte[10 * 1024];
+            random.nextBytes(otherState);
+            otherPublisher.notifyObservers(otherState);
+        }
+
+        state = state.clone();
+        state[0]++;
+        publisher.notifyObservers(state);
+
+        assertThat(observer.getData(), is(state));
+        publisher.unregisterAllObservers();
+    }
+
+    @Test
+    public void observersShouldReadTheLatestDataWhenTheBaseOfTheDataReadHasBeenTrimmed() throws Exception {
+        ObservoConf deltaConf = ObservoConf.builder(2000, LOCK_TIMEOUT_MS)
+                .deltaEncoding(1024, 0.5)
+                .build();
+        Observable<byte[]> publisher = observable("trimmedStates", byte[].class, deltaConf);
+        ObservableFactory observerFactory = factory(new ObservoConf(2000, LOCK_TIMEOUT_MS));
+        Observable<byte[]> states = observerFactory.createObservable("trimmedStates", byte[].class);
+        TestObserver<byte[]> observer = new TestObserver<>();
+        states.registerObserver(observer);
+        CuratorFramework client = factory.getClient();
+
+        // every state is unlike the previous one, so that each stores a new base; only the last two bases are retained
+        Random random = new Random(0);
+        List<byte[]> sent = new ArrayList<>();
+        List<byte[]> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] state = new byte[10 * 1024];
+            random.nextBytes(state);
+            publisher.notifyObservers(state);
+            sent.add(state);
+            written.add(client.getData().forPath("/trimmedStates"));
+        }
+
+        // the observers read the first state again, then the event thread is held up while the second one is written:
+        // the base of the first state is fetched once the second one has replaced it
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch held = new CountDownLatch(1);
+        client.create().forPath("/holdUp");
+        observerFactory.getClient().getData().usingWatcher((Watcher) event -> {
+            holding.countDown();
+            try {
+                held.await(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).forPath("/holdUp");
+        client.transaction().forOperations(
+                client.transactionOp().setData().forPath("/trimmedStates", written.get(0)),
+                client.transactionOp().setData().forPath("/holdUp", new byte[0]));
+        assertThat(holding.await(1000, TimeUnit.MILLISECONDS), is(true));
+        Thread.sleep(100);
+        client.setData().forPath("/trimmedStates", written.get(1));
+        held.countDown();
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!Arrays.equals(observer.getData(), sent.get(1)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(observer.getData(), is(sent.get(1)));
+        states.unregisterAllObservers();
+    }
+
+    @Test
+    public void snapshotsShouldSeedTheObserversOfARestartedProcess() throws Exception {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .snapshotDirectory(temporaryFolder.getRoot().toPath())
+                .build();
+        Observable<News> cachedFeeds = observable("cached", News.class, observoConf);
+        cachedFeeds.registerObserver(new TestObserver<>());
+        cachedFeeds.notifyObservers(TEST_NEWS);
+        cachedFeeds.unregisterAllObservers();
+
+        // the snapshot is still current
+        Observable<News> restartedFeeds = observable("cached", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        restartedFeeds.registerObserver(observer);
+        assertThat(observer.awaitForNotification(), is(true));
+        assertThat(observer.getData(), is(TEST_NEWS));
+
+        // observers registered later are handed the latest data received
+        TestObserver<News> lateObserver = new TestObserver<>();
+        restartedFeeds.registerObserver(lateObserver);
+        assertThat(lateObserver.awaitForNotification(), is(true));
+        assertThat(lateObserver.getData(), is(TEST_NEWS));
+        restartedFeeds.unregisterAllObservers();
+
+        // the snapshot is stale
+        News news = new News("news", "changed while restarting");
+        Observable<News> publisher = observable("cached", News.class, observoConf);
+        publisher.notifyObservers(news);
+        Observable<News> restartedAgainFeeds = observable("cached", News.class, observoConf);
+        TestObserver<News> freshObserver = new TestObserver<>();
+        restartedAgainFeeds.registerObserver(freshObserver);
+        assertThat(freshObserver.awaitForNotification(), is(true));
+        assertThat(freshObserver.getData(), is(news));
+        restartedAgainFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void getCurrentValueShouldReturnTheLatestNotifiedData() throws Exception {
+        assertThat(newsFeeds.getCurrentValue(), is(nullValue()));
+
+        newsFeeds.notifyObservers(TEST_NEWS);
+        assertThat(newsFeeds.getCurrentValue(), is(TEST_NEWS));
+
+        TestObserver<News> observer = new TestObserver<>();
+        newsFeeds.registerObserver(observer);
+        News news = new News("news", "content");
+        newsFeeds.notifyObservers(news);
+        assertThat(newsFeeds.getCurrentValue(), is(news));
+    }
+
+    @Test
+    public void metricsShouldCoverTheNotificationPipeline() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry(false);
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .metricsRegistry(registry)
+                .build();
+        Observable<News> measuredFeeds = observable("measured", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        measuredFeeds.registerObserver(observer);
+
+        measuredFeeds.notifyObservers(TEST_NEWS);
+
+        String observable = "observo/" + NAME_SPACE_SUFFIX + "/measured";
+        for (String latency : Arrays.asList(Metrics.LOCK_WAIT, Metrics.ENCODE, Metrics.PUBLISH, Metrics.ACK, Metrics.READ, Metrics.DECODE, Metrics.UPDATE)) {
+            assertThat(latency, registry.getHistogram(observable, latency).getCount() > 0, is(true));
+        }
+        assertThat(registry.getCount(observable, Metrics.NOTIFICATIONS), is(1L));
+        assertThat(registry.getCount(observable, Metrics.BYTES_WRITTEN) > 0, is(true));
+        assertThat(registry.getCount(observable, Metrics.BYTES_READ), is(registry.getCount(observable, Metrics.BYTES_WRITTEN)));
+        measuredFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void flightRecordingsShouldCoverTheNotificationLifecycle() throws Exception {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS).build();
+        Observable<News> recordedFeeds = observable("recorded", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        recordedFeeds.registerObserver(observer);
+
+        Path file = temporaryFolder.newFile("observo.jfr").toPath();
+        AsyncTask notification;
+        try (Recording recording = new Recording()) {
+            for (String event : Arrays.asList("LockAcquire", "LockRelease", "Encode", "Publish", "Decode", "ObserverUpdate")) {
+                recording.enable("observo." + event);
+            }
+            recording.start();
+            notification = recordedFeeds.notifyObserversAsync(TEST_NEWS);
+            notification.join(1000, TimeUnit.MILLISECONDS);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Set<String> recorded = new HashSet<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            recorded.add(event.getEventType().getName());
+            if (event.hasField("notificationId")) {
+                assertThat(event.getString("notificationId"), is(notification.getNotificationId().toString()));
+            }
+            if (event.hasField("payloadBytes")) {
+                assertThat(event.getLong("payloadBytes") > 0, is(true));
+            }
+        }
+        assertThat(recorded, is(new HashSet<>(Arrays.asList("observo.LockAcquire", "observo.LockRelease", "observo.Encode",
+                "observo.Publish", "observo.Decode", "observo.ObserverUpdate"))));
+        recordedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void inFlightNotificationsShouldFailAsSoonAsTheConnectionIsLost() throws Exception {
+        ObservoConf observoConf = new ObservoConf(10000, LOCK_TIMEOUT_MS);
+        Observable<News> suspendedFeeds = observable("suspended", News.class, observoConf);
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Observer<News> stuckObserver = data -> {
+            received.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        suspendedFeeds.registerObserver(stuckObserver);
+
+        AsyncTask notification = suspendedFeeds.notifyObserversAsync(TEST_NEWS);
+        assertThat(received.await(1000, TimeUnit.MILLISECONDS), is(true));
+        long start = System.currentTimeMillis();
+        zkServer.stop();
+        try {
+            notification.join(2000, TimeUnit.MILLISECONDS);
+            fail("the notification should have failed");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(KeeperException.ConnectionLossException.class));
+            assertThat(System.currentTimeMillis() - start, lessThan(2000L));
+        } finally {
+            release.countDown();
+            zkServer.restart();
+        }
+        suspendedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void observersShouldBeRecoveredAfterTheSessionExpired() throws Exception {
+        ObservoConf observoConf = new ObservoConf(5000, LOCK_TIMEOUT_MS);
+        ObservableFactory observingFactory = factory(observoConf);
+        Observable<News> observedFeeds = observingFactory.createObservable("recovered", News.class);
+        Observable<News> publishedFeeds = observable("recovered", News.class, observoConf);
+        List<News> received = new CopyOnWriteArrayList<>();
+        CountDownLatch caughtUp = new CountDownLatch(1);
+        observedFeeds.registerObserver(data -> {
+            received.add(data);
+            caughtUp.countDown();
+        });
+
+        observingFactory.getClient().getZookeeperClient().getZooKeeper().getTestable().injectSessionExpiration();
+        // notified while the observing process reconnects, with its watch and observer node gone with the session
+        AsyncTask notification = publishedFeeds.notifyObserversAsync(TEST_NEWS, AckPolicy.atLeast(1));
+        assertThat(caughtUp.await(5000, TimeUnit.MILLISECONDS), is(true));
+        // the lock is held until the notification completes
+        notification.join(5000, TimeUnit.MILLISECONDS);
+
+        // the observer node created in the new session acknowledges, while the one of the expired session lingers
+        News news = new News("news", "content");
+        publishedFeeds.notifyObservers(news, AckPolicy.atLeast(1));
+        assertThat(received, is(Arrays.asList(TEST_NEWS, news)));
+        observedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void journaledNotificationsShouldBePublishedOnceReconnected() throws Exception {
+        assertThat(publishWhileDisconnected(false), is(Arrays.asList(TEST_NEWS, new News("news", "content"))));
+    }
+
+    @Test
+    public void coalescedJournaledNotificationsShouldPublishTheLatest() throws Exception {
+        assertThat(publishWhileDisconnected(true), is(Collections.singletonList(new News("news", "content"))));
+    }
+
+    /**
+     * @return the data received by an observer of notifications published while the server was down
+     */
+    private List<News> publishWhileDisconnected(boolean coalescing) throws Exception {
+        ObservoConf observingConf = ObservoConf.builder(5000, LOCK_TIMEOUT_MS)
+                .eventLog(10, 10)
+                .build();
+        ObservoConf journalingConf = ObservoConf.builder(5000, LOCK_TIMEOUT_MS)
+                .eventLog(10, 10)
+                .writeAheadLog(temporaryFolder.newFolder().toPath(), coalescing)
+                .build();
+        Observable<News> observedFeeds = observable("journaled", News.class, observingConf);
+        Observable<News> journaledFeeds = observable("journaled", News.class, journalingConf);
+        List<News> received = new CopyOnWriteArrayList<>();
+        observedFeeds.registerObserver(received::add);
+
+        zkServer.stop();
+        List<AsyncTask> notifications = Arrays.asList(
+                journaledFeeds.notifyObserversAsync(TEST_NEWS),
+                journaledFeeds.notifyObserversAsync(new News("news", "content")));
+        for (AsyncTask notification : notifications) {
+            try {
+                notification.join(2000, TimeUnit.MILLISECONDS);
+                fail("the notification should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(KeeperException.ConnectionLossException.class));
+            }
+        }
+        zkServer.restart();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        int expected = coalescing ? 1 : 2;
+        while (received.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // nothing more is published once the journal is drained
+        Thread.sleep(200);
+        observedFeeds.unregisterAllObservers();
+        return received;
+    }
+
+    @Test
+    public void metadataObserversShouldReceiveTheEnvelopeOfTheNotification() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry(false);
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .metricsRegistry(registry)
+                .build();
+        Observable<News> tracedFeeds = observable("traced", News.class, observoConf);
+        List<Envelope> envelopes = new CopyOnWriteArrayList<>();
+        List<News> received = new CopyOnWriteArrayList<>();
+        tracedFeeds.registerMetadataObserver((data, envelope) -> {
+            received.add(data);
+            envelopes.add(envelope);
+        });
+
+        long before = System.currentTimeMillis();
+        AsyncTask notification = tracedFeeds.notifyObserversAsync(TEST_NEWS);
+        notification.join(1000, TimeUnit.MILLISECONDS);
+
+        assertThat(received, is(Collections.singletonList(TEST_NEWS)));
+        assertThat(envelopes.get(0).getId(), is(notification.getNotificationId()));
+        assertThat(envelopes.get(0).getPublishTimeMs() >= before, is(true));
+        assertThat(envelopes.get(0).getPublishTimeMs() <= System.currentTimeMillis(), is(true));
+        assertThat(registry.getHistogram("observo/" + NAME_SPACE_SUFFIX + "/traced", Metrics.PROPAGATION).getCount(), is(1L));
+        tracedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void optimisticPublishersShouldNotifyConcurrently() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .publishMode(PublishMode.OPTIMISTIC)
+                .build();
+        Observable<News> optimisticFeeds = observable("optimistic", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        optimisticFeeds.registerObserver(observer);
+
+        AsyncTask first = optimisticFeeds.notifyObserversAsync(new News("news1", "content"));
+        AsyncTask second = optimisticFeeds.notifyObserversAsync(new News("news2", "content"));
+        first.join(NOTIFICATION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        second.join(NOTIFICATION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertThat(observer.getData(), is(new News("news2", "content")));
+        optimisticFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void publishersWaitingForTheLockShouldNotHoldUpTheLockHolders() throws Exception {
+        ExecutorService publishExecutor = Executors.newSingleThreadExecutor();
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .publishExecutor(publishExecutor)
+                .build();
+        ObservableFactory lockingFactory = factory(observoConf);
+        Observable<News> contendedFeeds = lockingFactory.createObservable("contended", News.class);
+        Observable<News> freeFeeds = lockingFactory.createObservable("free", News.class);
+        TestObserver<News> observer = new TestObserver<>();
+        freeFeeds.registerObserver(observer);
+        InterProcessSemaphoreMutex heldElsewhere = new InterProcessSemaphoreMutex(factory.getClient(), "/contended/lock");
+        heldElsewhere.acquire();
+        try {
+            AsyncTask waiting = contendedFeeds.notifyObserversAsync(TEST_NEWS);
+            Thread.sleep(100);
+
+            freeFeeds.notifyObserversAsync(TEST_NEWS).join(NOTIFICATION_TIMEOUT_MS * 2, TimeUnit.MILLISECONDS);
+
+            assertThat(observer.getData(), is(TEST_NEWS));
+            assertThat(waiting.toCompletableFuture().isDone(), is(false));
+        } finally {
+            heldElsewhere.release();
+            freeFeeds.unregisterAllObservers();
+            publishExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void aggregatedAcknowledgementsShouldCompleteTheNotification() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .ackMode(AckMode.AGGREGATED)
+                .build();
+        Observable<News> aggregatedFeeds = observable("aggregated", News.class, observoConf);
+        TestObserver<News> observer1 = new TestObserver<>();
+        aggregatedFeeds.registerObserver(observer1);
+        TestObserver<News> observer2 = new TestObserver<>();
+        aggregatedFeeds.registerObserver(observer2);
+
+        News news1 = new News("news1", "content");
+        aggregatedFeeds.notifyObservers(news1);
+        assertThat(observer1.getData(), is(news1));
+        assertThat(observer2.getData(), is(news1));
+
+        aggregatedFeeds.unregisterObserver(observer2);
+        News news2 = new News("news2", "content");
+        aggregatedFeeds.notifyObservers(news2);
+        assertThat(observer1.getData(), is(news2));
+        aggregatedFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void eventLogShouldDeliverEveryNotificationInOrder() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(2000, LOCK_TIMEOUT_MS)
+                .publishMode(PublishMode.OPTIMISTIC)
+                .eventLog(100, 5)
+                .build();
+        Observable<Integer> events = observable("events", Integer.class, observoConf);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        events.registerObserver(received::add);
+
+        List<AsyncTask> tasks = new ArrayList<>();
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(events.notifyObserversAsync(i));
+            sent.add(i);
+        }
+        for (AsyncTask task : tasks) {
+            task.join(2000, TimeUnit.MILLISECONDS);
+        }
+
+        assertThat(received, is(sent));
+        events.unregisterAllObservers();
+    }
+
+    @Test
+    public void eventLogShouldTrimEveryEntryOlderThanTheRetention() throws Exception {
+        Observable<Integer> events = observable("trimmedEvents", Integer.class, ObservoConf.builder(2000, LOCK_TIMEOUT_MS).eventLog(100, 5).build());
+        for (int i = 0; i < 10; i++) {
+            events.notifyObservers(i);
+        }
+
+        // a process retaining fewer entries, as after a change of retention
+        ObservableFactory trimmingFactory = factory(ObservoConf.builder(2000, LOCK_TIMEOUT_MS).eventLog(3, 5).build());
+        trimmingFactory.createObservable("trimmedEvents", Integer.class).notifyObservers(10);
+
+        CuratorFramework client = trimmingFactory.getClient();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (client.getChildren().forPath("/trimmedEvents/log").size() > 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(client.getChildren().forPath("/trimmedEvents/log").size(), is(3));
+    }
+
+    @Test
+    public void persistentWatchesShouldNotifyEveryChange() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS)
+                .watchMode(WatchMode.PERSISTENT)
+                .build();
+        Observable<News> persistentFeeds = observable("persistent", News.class, observoConf);
+        TestObserver<News> observer = new TestObserver<>();
+        persistentFeeds.registerObserver(observer);
+
+        for (int i = 0; i < 5; i++) {
+            News news = new News("news" + i, "content");
+            persistentFeeds.notifyObservers(news);
+            assertThat(observer.getData(), is(news));
+        }
+        persistentFeeds.unregisterAllObservers();
+    }
+
+    @Test
+    public void persistentWatchesShouldDeliverTheEventLogInOrder() throws InterruptedException, TimeoutException, ExecutionException {
+        ObservoConf observoConf = ObservoConf.builder(2000, LOCK_TIMEOUT_MS)
+                .publishMode(PublishMode.OPTIMISTIC)
+                .eventLog(100, 5)
+                .watchMode(WatchMode.PERSISTENT)
+                .build();
+        Observable<Integer> events = observable("persistentEvents", Integer.class, observoConf);
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        events.registerObserver(received::add);
+
+        List<AsyncTask> tasks = new ArrayList<>();
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(events.notifyObserversAsync(i));
+            sent.add(i);
+        }
+        AsyncTask.allOf(tasks.toArray(new AsyncTask[0])).join(2000, TimeUnit.MILLISECONDS);
+
+        assertThat(received, is(sent));
+        events.unregisterAllObservers();
+    }
+
+    @Test
+    public void shardedObservablesShouldLiveOnTheEnsembleTheirNameIsMappedTo() throws Exception {
+        ObservoConf observoConf = new ObservoConf(NOTIFICATION_TIMEOUT_MS, LOCK_TIMEOUT_MS);
+        try (TestingServer otherServer = new TestingServer();
+             ShardedObservableFactory shardedFactory = new ShardedObservableFactory(Arrays.asList(
+                     zookeeperConf(),
+                     new ZookeeperConf(otherServer.getConnectString(), CONNECTION_TIMEOUT_MS, RETRY_TIMES, RETRY_MS_SLEEP)),
+                     observoConf, NAME_SPACE_SUFFIX)) {
+            List<String> connectStrings = Arrays.asList(zkServer.getConnectString(), otherServer.getConnectString());
+
+            Set<String> usedEnsembles = new HashSet<>();
+            for (int i = 0; usedEnsembles.size() < 2; i++) {
+                String name = "sharded" + i;
+                String ensemble = shardedFactory.getZookeeperConf(name).getConnectString();
+                usedEnsembles.add(ensemble);
+                Observable<News> feeds = shardedFactory.createObservable(name, News.class);
+                TestObserver<News> observer = new TestObserver<>();
+                feeds.registerObserver(observer);
+
+                feeds.notifyObservers(TEST_NEWS);
+
+                assertThat(observer.getData(), is(TEST_NEWS));
+                for (String connectString : connectStrings) {
+                    assertThat(existsOn(connectString, "/" + name), is(connectString.equals(ensemble)));
+                }
+                feeds.unregisterAllObservers();
+            }
+        }
+    }
+
+    private static boolean existsOn(String connectString, String path) throws Exception {
+        try (CuratorFramework client = client(connectString)) {
+            return client.checkExists().forPath(path) != null;
+        }
+    }
+
+    private static ZookeeperConf zookeeperConf() {
+        return new ZookeeperConf(zkServer.getConnectString(), CONNECTION_TIMEOUT_MS, RETRY_TIMES, RETRY_MS_SLEEP);
+    }
+
+    /**
+     * @return a factory standing for another process, closed after the test
+     */
+    private ObservableFactory factory(ObservoConf observoConf) {
+        ObservableFactory otherFactory = new ObservableFactory(zookeeperConf(), observoConf, NAME_SPACE_SUFFIX);
+        opened.add(otherFactory);
+        return otherFactory;
+    }
+
+    private <T extends Serializable> Observable<T> observable(String name, Class<T> dataType, ObservoConf observoConf) {
+        return factory(observoConf).createObservable(name, dataType);
+    }
+
+    /**
+     * @return the client of another process, not running observo, closed after the test unless closed before
+     */
+    private CuratorFramework otherProcess() {
+        CuratorFramework client = client(zkServer.getConnectString());
+        opened.add(client);
+        return client;
+    }
+
+    /**
+     * Registers an observer of another process, which never acknowledges.
+     * @return the name of its observer node, gone once the process is closed
+     */
+    private static String otherProcessObserver(CuratorFramework otherProcess, String observable, String namePrefix) throws Exception {
+        return ZKPaths.getNodeFromPath(otherProcess.create().withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
+                .forPath("/" + observable + "/observers/" + namePrefix + "-"));
+    }
+
+    private static CuratorFramework client(String connectString) {
+        CuratorFramework client = CuratorFrameworkFactory.builder()
+                .namespace("observo/" + NAME_SPACE_SUFFIX)
+                .connectString(connectString)
+                .retryPolicy(new RetryNTimes(RETRY_TIMES, RETRY_MS_SLEEP))
+                .build();
+        client.start();
+        return client;
     }
 
     private static class TestCompleteTask implements Runnable {
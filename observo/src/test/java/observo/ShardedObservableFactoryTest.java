@@ -0,0 +1,50 @@
+package observo;
+
+import observo.conf.ObservoConf;
+import observo.conf.ZookeeperConf;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class ShardedObservableFactoryTest {
+
+    @Test
+    public void anEnsembleIsTheSameWhateverTheOrderOfItsServers() {
+        assertThat(ShardedObservableFactory.ensembleOf("b:2181,a:2181"),
+                is(ShardedObservableFactory.ensembleOf("a:2181,b:2181")));
+        assertThat(ShardedObservableFactory.ensembleOf("b:2181, A:2181"), is("a:2181,b:2181"));
+    }
+
+    @Test
+    public void theFactoriesAlreadyCreatedAreClosedIfAnotherCannotBe() {
+        List<ObservableFactory> created = new ArrayList<>();
+        List<ZookeeperConf> zookeeperConfs = Arrays.asList(
+                new ZookeeperConf("a:2181", 200, 1, 10),
+                new ZookeeperConf("b:2181", 200, 1, 10));
+        try {
+            new ShardedObservableFactory(zookeeperConfs, zookeeperConf -> {
+                if (!created.isEmpty()) {
+                    throw new IllegalStateException("cannot connect to " + zookeeperConf.getConnectString());
+                }
+                ObservableFactory factory = new ObservableFactory(zookeeperConf, new ObservoConf(300, 1000), "testApp");
+                created.add(factory);
+                return factory;
+            });
+            fail("the second factory should not have been created");
+        } catch (IllegalStateException e) {
+            assertThat(created.get(0).getClient().getState(), is(CuratorFrameworkState.STOPPED));
+        }
+    }
+
+    @Test
+    public void theChrootOfAnEnsembleIsKept() {
+        assertThat(ShardedObservableFactory.ensembleOf("b:2181,a:2181/apps/Observo"), is("a:2181,b:2181/apps/Observo"));
+    }
+}
@@ -0,0 +1,103 @@
+package observo.codec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BinaryCodecTest {
+
+    private final BinaryCodec<Person> codec = new BinaryCodec<>(
+            (person, out) -> {
+                out.writeUTF(person.name);
+                out.writeInt(person.age);
+            },
+            in -> new Person(in.readUTF(), in.readInt()));
+
+    @Test
+    public void canEncodeAndDecodeAnObject() throws IOException {
+        Person john = new Person("John", 34);
+        assertThat(codec.decode(codec.encode(john)), is(john));
+    }
+
+    @Test
+    public void canEncodeAndDecodeNull() throws IOException {
+        assertThat(codec.decode(codec.encode(null)), is(nullValue()));
+    }
+
+    @Test
+    public void pooledBufferIsResetBetweenEncodings() throws IOException {
+        Person john = new Person("John", 34);
+        Person jack = new Person("Jack", 21);
+        byte[] first = codec.encode(john);
+        byte[] second = codec.encode(jack);
+        assertThat(second.length, is(first.length));
+        assertThat(codec.decode(first), is(john));
+        assertThat(codec.decode(second), is(jack));
+    }
+
+    @Test
+    public void canEncodeWithANestedCodec() throws IOException {
+        BinaryCodec<Person> nested = new BinaryCodec<>(
+                (person, out) -> BinaryCodec.writeBytes(codec.encode(person), out),
+                in -> codec.decode(BinaryCodec.readBytes(in)));
+        Person john = new Person("John", 34);
+        assertThat(nested.decode(nested.encode(john)), is(john));
+        assertThat(codec.decode(codec.encode(john)), is(john));
+    }
+
+    @Test
+    public void canEncodeAndDecodeStrings() throws IOException {
+        BinaryCodec<String> strings = BinaryCodec.strings();
+        assertThat(strings.decode(strings.encode("test")), is("test"));
+    }
+
+    @Test
+    public void canEncodeAndDecodeBytesLargerThanThePooledBuffer() throws IOException {
+        BinaryCodec<byte[]> bytes = BinaryCodec.bytes();
+        byte[] large = new byte[2 * 1024 * 1024];
+        large[large.length - 1] = 1;
+        assertThat(bytes.decode(bytes.encode(large)), is(large));
+        assertThat(bytes.decode(bytes.encode(new byte[] {1, 2})), is(new byte[] {1, 2}));
+    }
+
+    private static class Person {
+        private final String name;
+        private final int age;
+
+        public Person(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        @Override
+        public String toString() {
+            return "Person{" +
+                    "name='" + name + '\'' +
+                    ", age=" + age +
+                    '}';
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Person)) return false;
+
+            Person person = (Person) o;
+
+            if (age != person.age) return false;
+            return name != null ? name.equals(person.name) : person.name == null;
+
+        }
+
+        @Override
+        public int hashCode() {
+            int result = name != null ? name.hashCode() : 0;
+            result = 31 * result + age;
+            return result;
+        }
+    }
+}
@@ -10,7 +10,13 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -53,6 +59,41 @@ public class DistributedLockITest {
         assertThat(distributedLock.isLocked(), is(true));
     }
 
+    @Test
+    public void acquireLockAsync() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            distributedLock.acquireLockAsync(executor).get(LOCK_TIMEOUT_MS * 10, TimeUnit.MILLISECONDS);
+            assertThat(distributedLock.isLocked(), is(true));
+        } finally {
+            distributedLock.releaseLock();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void acquireLockAsyncFailsIfTheLockIsHeldElsewhere() throws Exception {
+        CuratorFramework otherProcess = CuratorFrameworkFactory.builder()
+                .namespace(NAMESPACE)
+                .connectString(zkServer.getConnectString())
+                .retryPolicy(new RetryNTimes(RETRY_TIMES, RETRY_MS_SLEEP))
+                .build();
+        otherProcess.start();
+        DistributedLock otherLock = new DistributedLock(otherProcess, "/lockpath", LOCK_TIMEOUT_MS);
+        otherLock.acquireLock();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            distributedLock.acquireLockAsync(executor).get(LOCK_TIMEOUT_MS * 10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        } finally {
+            otherLock.releaseLock();
+            otherProcess.close();
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void releaseLock() {
         distributedLock.releaseLock();
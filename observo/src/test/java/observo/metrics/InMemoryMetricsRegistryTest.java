@@ -0,0 +1,35 @@
+package observo.metrics;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class InMemoryMetricsRegistryTest {
+
+    @Test
+    public void metricsArePublishedOverJmx() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry(true);
+        registry.latency("observo/test/jmx", Metrics.PUBLISH).record(1000);
+        registry.counter("observo/test/jmx", Metrics.TIMEOUTS).increment(2);
+
+        ObjectName name = new ObjectName("observo:type=Observable,name=" + ObjectName.quote("observo/test/jmx"));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "publish.count"), is(1L));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "publish.max"), is(1000L));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, Metrics.TIMEOUTS), is(2L));
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "update.p99"), is(0L));
+    }
+
+    @Test
+    public void countersAreKeptPerObservable() {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry(false);
+        registry.counter("first", Metrics.ERRORS).increment(1);
+        registry.counter("second", Metrics.ERRORS).increment(3);
+        assertThat(registry.getCount("first", Metrics.ERRORS), is(1L));
+        assertThat(registry.getCount("second", Metrics.ERRORS), is(3L));
+        assertThat(registry.getCount("first", Metrics.TIMEOUTS), is(0L));
+    }
+}
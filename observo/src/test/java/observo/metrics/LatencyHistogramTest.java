@@ -0,0 +1,51 @@
+package observo.metrics;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void percentilesAreWithinThePrecision() {
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertThat(histogram.getCount(), is(100_000L));
+        assertThat((double) histogram.getPercentile(50), is(closeTo(50_000_000, 50_000_000 * 0.035)));
+        assertThat((double) histogram.getPercentile(99), is(closeTo(99_000_000, 99_000_000 * 0.035)));
+        assertThat(histogram.getPercentile(100), is(100_000_000L));
+        assertThat(histogram.getMax(), is(100_000_000L));
+        assertThat(histogram.getMean(), is(closeTo(50_000_500, 1)));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        histogram.record(3);
+        histogram.record(7);
+        assertThat(histogram.getPercentile(50), is(3L));
+        assertThat(histogram.getPercentile(100), is(7L));
+    }
+
+    @Test
+    public void everyValueFallsWithinItsBucket() {
+        for (long value : new long[]{0, 31, 32, 33, 63, 64, 1_000_003, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(value, is(lessThanOrEqualTo(LatencyHistogram.highestValueAt(index))));
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueAt(index - 1) < value, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertThat(histogram.getPercentile(99), is(0L));
+        assertThat(histogram.getMean(), is(0.0));
+    }
+}
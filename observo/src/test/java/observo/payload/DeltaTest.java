@@ -0,0 +1,66 @@
+package observo.payload;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class DeltaTest {
+
+    private final Random random = new Random(0);
+
+    @Test
+    public void smallChangeMakesASmallDelta() throws IOException {
+        byte[] base = randomBytes(100_000);
+        byte[] target = base.clone();
+        target[50_000]++;
+        byte[] delta = Delta.diff(base, target);
+        assertThat(delta.length, is(lessThan(64)));
+        assertThat(Delta.apply(base, delta, target.length), is(target));
+    }
+
+    @Test
+    public void insertionShiftingTheRestMakesASmallDelta() throws IOException {
+        byte[] base = randomBytes(100_000);
+        byte[] target = new byte[base.length + 10];
+        System.arraycopy(base, 0, target, 0, 1000);
+        System.arraycopy(base, 1000, target, 1010, base.length - 1000);
+        byte[] delta = Delta.diff(base, target);
+        assertThat(delta.length, is(lessThan(64)));
+        assertThat(Delta.apply(base, delta, target.length), is(target));
+    }
+
+    @Test
+    public void unrelatedDataIsRebuilt() throws IOException {
+        byte[] base = randomBytes(1000);
+        byte[] target = randomBytes(1500);
+        assertThat(Delta.apply(base, Delta.diff(base, target), target.length), is(target));
+    }
+
+    @Test
+    public void dataShorterThanABlockIsRebuilt() throws IOException {
+        byte[] base = {1, 2, 3};
+        byte[] target = {1, 2, 4, 5};
+        assertThat(Delta.apply(base, Delta.diff(base, target), target.length), is(target));
+        assertThat(Delta.apply(new byte[0], Delta.diff(new byte[0], new byte[0]), 0), is(new byte[0]));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDeltaIsRejected() throws IOException {
+        byte[] base = randomBytes(1000);
+        byte[] target = randomBytes(1000);
+        byte[] delta = Delta.diff(base, target);
+        Delta.apply(base, Arrays.copyOf(delta, delta.length - 1), target.length);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package observo.payload;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class PayloadWriterTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private final PayloadWriter payloadWriter = new PayloadWriter(Compression.DEFLATE, THRESHOLD);
+    private final PayloadReader payloadReader = new PayloadReader();
+
+    @Test
+    public void payloadBelowThresholdIsNotCompressed() throws Exception {
+        byte[] encoded = compressible(THRESHOLD - 1);
+        byte[] payload = payloadWriter.write(encoded);
+        assertThat(payload.length, is(encoded.length + PayloadHeader.BASE_LENGTH));
+        assertThat(payloadReader.read(payload).get().getBody(), is(encoded));
+        assertThat(payloadWriter.getCompressionStats().getCompressedPayloads(), is(0L));
+    }
+
+    @Test
+    public void payloadAboveThresholdIsCompressed() throws Exception {
+        byte[] encoded = compressible(10 * THRESHOLD);
+        byte[] payload = payloadWriter.write(encoded);
+        assertThat(payload.length, is(lessThan(encoded.length)));
+        assertThat(payloadReader.read(payload).get().getBody(), is(encoded));
+        assertThat(payloadWriter.getCompressionStats().getCompressedPayloads(), is(1L));
+        assertThat(payloadWriter.getCompressionStats().getRatio(), is(lessThan(1.0)));
+    }
+
+    @Test
+    public void incompressiblePayloadIsWrittenUncompressed() throws Exception {
+        byte[] encoded = new byte[10 * THRESHOLD];
+        new Random(0).nextBytes(encoded);
+        byte[] payload = payloadWriter.write(encoded);
+        assertThat(payloadReader.read(payload).get().getBody(), is(encoded));
+        assertThat(payloadWriter.getCompressionStats().getCompressedPayloads(), is(0L));
+    }
+
+    @Test
+    public void payloadWithoutHeaderIsReadAsIs() throws Exception {
+        byte[] legacy = {(byte) 0xAC, (byte) 0xED, 0, 5};
+        assertThat(payloadReader.read(legacy).get().getBody(), is(legacy));
+    }
+
+    @Test
+    public void batchCarriesAllTheItems() throws Exception {
+        byte[] first = {1};
+        byte[] second = compressible(10 * THRESHOLD);
+        Payload payload = payloadReader.read(payloadWriter.writeBatch(Arrays.asList(first, second))).get();
+        assertThat(payload.isBatch(), is(true));
+        assertThat(payload.getItems().get(0), is(first));
+        assertThat(payload.getItems().get(1), is(second));
+    }
+
+    @Test
+    public void envelopeIdentifiesTheNotification() throws Exception {
+        Envelope envelope = new Envelope(UUID.randomUUID(), 1234L, "publisher-host");
+        byte[] encoded = compressible(10 * THRESHOLD);
+        Payload payload = payloadReader.read(payloadWriter.write(encoded, envelope)).get();
+        assertThat(payload.getBody(), is(encoded));
+        assertThat(payload.getEnvelope().getId(), is(envelope.getId()));
+        assertThat(payload.getEnvelope().getPublishTimeMs(), is(1234L));
+        assertThat(payload.getEnvelope().getPublisher(), is("publisher-host"));
+        assertThat(payloadReader.read(payloadWriter.write(encoded)).get().getEnvelope(), is(nullValue()));
+    }
+
+    @Test(expected = IOException.class)
+    public void payloadLargerThanTheNodeLimitIsRejected() throws Exception {
+        byte[] encoded = new byte[2 * 1024 * 1024];
+        new Random(0).nextBytes(encoded);
+        payloadWriter.write(encoded);
+    }
+
+    private static byte[] compressible(int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) 'a');
+        return bytes;
+    }
+}
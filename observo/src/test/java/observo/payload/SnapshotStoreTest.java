@@ -0,0 +1,64 @@
+package observo.payload;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void savedSnapshotIsLoadedAfterRestart() {
+        Path file = temporaryFolder.getRoot().toPath().resolve("news.snapshot");
+        byte[] body = {1, 2, 3};
+        new SnapshotStore(file).save(3, 42L, new Payload(body, true));
+
+        SnapshotStore.Snapshot snapshot = new SnapshotStore(file).load();
+        assertThat(snapshot.getVersion(), is(3));
+        assertThat(snapshot.getMzxid(), is(42L));
+        assertThat(snapshot.getPayload().getBody(), is(body));
+        assertThat(snapshot.getPayload().isBatch(), is(true));
+    }
+
+    @Test
+    public void snapshotGrowsWithThePayload() {
+        SnapshotStore snapshotStore = new SnapshotStore(temporaryFolder.getRoot().toPath().resolve("news.snapshot"));
+        snapshotStore.save(1, 1L, new Payload(new byte[]{1}, false));
+        byte[] large = new byte[100 * 1024];
+        new Random(0).nextBytes(large);
+        snapshotStore.save(2, 2L, new Payload(large, false));
+        byte[] small = {2};
+        snapshotStore.save(3, 3L, new Payload(small, false));
+
+        assertThat(snapshotStore.load().getPayload().getBody(), is(small));
+    }
+
+    @Test
+    public void missingSnapshotIsNotLoaded() {
+        assertThat(new SnapshotStore(temporaryFolder.getRoot().toPath().resolve("missing.snapshot")).load(), is(nullValue()));
+    }
+
+    @Test
+    public void corruptedSnapshotIsNotLoaded() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("news.snapshot");
+        byte[] body = new byte[64];
+        Arrays.fill(body, (byte) 1);
+        new SnapshotStore(file).save(3, 42L, new Payload(body, false));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(40);
+            raf.write(0);
+        }
+        assertThat(new SnapshotStore(file).load(), is(nullValue()));
+    }
+}
@@ -0,0 +1,70 @@
+package observo.payload;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void uncommittedEntriesAreLoadedBackInOrder() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("news.wal");
+        UUID first = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(first, false, Collections.singletonList(new byte[]{1}));
+            long second = log.append(UUID.randomUUID(), false, Collections.singletonList(new byte[]{2})).get(1, TimeUnit.SECONDS);
+            log.append(third, true, Arrays.asList(new byte[]{3}, new byte[]{4, 5})).get(1, TimeUnit.SECONDS);
+            log.commit(second);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            List<WriteAheadLog.Entry> pending = log.getPending();
+            assertThat(pending.size(), is(2));
+            assertThat(pending.get(0).getNotificationId(), is(first));
+            assertThat(pending.get(0).getItems().get(0), is(new byte[]{1}));
+            assertThat(pending.get(1).getNotificationId(), is(third));
+            assertThat(pending.get(1).isBatch(), is(true));
+            assertThat(pending.get(1).getItems().get(1), is(new byte[]{4, 5}));
+            // sequences go on after the loaded entries
+            long next = log.append(UUID.randomUUID(), false, Collections.singletonList(new byte[0])).get(1, TimeUnit.SECONDS);
+            assertThat(next, is(pending.get(1).getSequence() + 1));
+        }
+    }
+
+    @Test
+    public void tornRecordEndsTheLog() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("news.wal");
+        UUID kept = UUID.randomUUID();
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            log.append(kept, false, Collections.singletonList(new byte[]{1}));
+            log.append(UUID.randomUUID(), false, Collections.singletonList(new byte[64])).get(1, TimeUnit.SECONDS);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertThat(log.getPending().size(), is(1));
+            assertThat(log.getPending().get(0).getNotificationId(), is(kept));
+            log.append(UUID.randomUUID(), false, Collections.singletonList(new byte[]{2})).get(1, TimeUnit.SECONDS);
+        }
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            assertThat(log.getPending().size(), is(2));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package observo.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+    private static final int POINTS_PER_NODE = 128;
+
+    @Test
+    public void keysShouldMapToTheSameNodeWhateverTheOrderOfTheNodes() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a", "b", "c"), POINTS_PER_NODE);
+        ConsistentHashRing<String> reordered = new ConsistentHashRing<>(nodes("c", "a", "b"), POINTS_PER_NODE);
+
+        for (int i = 0; i < KEYS; i++) {
+            assertThat(reordered.nodeFor("key" + i), is(ring.nodeFor("key" + i)));
+        }
+    }
+
+    @Test
+    public void keysShouldBeSpreadEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a", "b", "c", "d"), POINTS_PER_NODE);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("key" + i), 1, Integer::sum);
+        }
+
+        for (String node : ring.getNodes().keySet()) {
+            assertThat(counts.get(node), is(greaterThan(KEYS / 4 * 2 / 3)));
+            assertThat(counts.get(node), is(lessThan(KEYS / 4 * 4 / 3)));
+        }
+    }
+
+    @Test
+    public void addingANodeShouldOnlyMoveKeysToIt() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes("a", "b", "c"), POINTS_PER_NODE);
+        ConsistentHashRing<String> grown = new ConsistentHashRing<>(nodes("a", "b", "c", "d"), POINTS_PER_NODE);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.nodeFor("key" + i);
+            String after = grown.nodeFor("key" + i);
+            if (!before.equals(after)) {
+                assertThat(after, is("d"));
+                moved++;
+            }
+        }
+        assertThat(moved, is(greaterThan(KEYS / 4 * 2 / 3)));
+        assertThat(moved, is(lessThan(KEYS / 4 * 4 / 3)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aRingShouldNeedANode() {
+        new ConsistentHashRing<>(new HashMap<String, String>(), POINTS_PER_NODE);
+    }
+
+    private static Map<String, String> nodes(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+}